@@ -1,6 +1,9 @@
 package de.eitco.mavenizer;
 
 import java.util.List;
+import java.util.Optional;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 public class AnalysisReport {
 	
@@ -22,7 +25,10 @@ public class AnalysisReport {
 	public static class JarReport {
 		public String filename;
 		public String dir;
+		@JsonInclude(JsonInclude.Include.NON_NULL)
+		public String nestedIn = null;// archive filename and path of jar inside archive, only if jar was found inside an archive in 'dir'
 		public String sha256;
+		public FingerprintVersion fingerprintVersion = FingerprintVersion.V1;// reports of older versions do not contain this field
 		public boolean foundOnRemote = false;
 		public MavenUid result;
 		
@@ -30,16 +36,18 @@ public class AnalysisReport {
 		private JarReport() {
 			// for deserializer
 		}
-		public JarReport(String filename, String dir, String sha256, boolean foundOnRemote, MavenUid result) {
+		public JarReport(String filename, String dir, Optional<String> nestedIn, String sha256, FingerprintVersion fingerprintVersion, boolean foundOnRemote, MavenUid result) {
 			this.filename = filename;
 			this.dir = dir;
+			this.nestedIn = nestedIn.orElse(null);
 			this.sha256 = sha256;
+			this.fingerprintVersion = fingerprintVersion;
 			this.foundOnRemote = foundOnRemote;
 			this.result = result;
 		}
 	}
 	
-	public String schemaVersion = "1.0";
+	public String schemaVersion = "1.2";
 	
 	public AnalysisInfo analysisInfo;
 	public List<JarReport> jarResults;
@@ -0,0 +1,179 @@
+package de.eitco.mavenizer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compact, immutable mapping from class entry names to SHA-256 digests of the class files of a single jar.
+ * <br>
+ * Instead of a {@code HashMap<Path, byte[]>}, each class is represented by a 64 bit id derived from its entry name and by its digest packed
+ * into 4 longs. Both arrays are sorted by id, so two instances can be compared with two array comparisons instead of one map lookup per class.
+ * <br>
+ * Retained size per class is 40 bytes, compared to roughly 120 bytes for the map (map node, Path object with its internal byte array,
+ * digest byte array). For a jar with 10k classes this reduces retained heap from about 1.15 MB to 0.4 MB.
+ */
+public final class ClassHashes {
+
+	private static final int DIGEST_LONGS = 4;
+
+	public static final ClassHashes EMPTY = new ClassHashes(new long[0], new long[0]);
+
+	/**
+	 * Collects class digests in any order. Not thread-safe.
+	 */
+	public static class Builder {
+		private long[] nameIds = new long[64];
+		private long[] digests = new long[64 * DIGEST_LONGS];
+		private int size = 0;
+
+		public void add(String entryName, byte[] sha256) {
+			if (size == nameIds.length) {
+				nameIds = Arrays.copyOf(nameIds, size * 2);
+				digests = Arrays.copyOf(digests, size * 2 * DIGEST_LONGS);
+			}
+			nameIds[size] = nameId(entryName);
+			var digest = ByteBuffer.wrap(sha256);
+			for (int i = 0; i < DIGEST_LONGS; i++) {
+				digests[size * DIGEST_LONGS + i] = digest.getLong();
+			}
+			size++;
+		}
+
+		public ClassHashes build() {
+			if (size == 0) {
+				return EMPTY;
+			}
+			sortByKey(nameIds, digests, DIGEST_LONGS, 0, size - 1);
+			// duplicate entry names (broken jars) are kept only once, same as a map would
+			int distinct = 1;
+			for (int i = 1; i < size; i++) {
+				if (nameIds[i] != nameIds[distinct - 1]) {
+					nameIds[distinct] = nameIds[i];
+					System.arraycopy(digests, i * DIGEST_LONGS, digests, distinct * DIGEST_LONGS, DIGEST_LONGS);
+					distinct++;
+				}
+			}
+			return new ClassHashes(Arrays.copyOf(nameIds, distinct), Arrays.copyOf(digests, distinct * DIGEST_LONGS));
+		}
+	}
+
+	/**
+	 * Sorts keys ascending in place and moves each key's group of {@code valueWidth} values along with it.
+	 */
+	static void sortByKey(long[] keys, long[] values, int valueWidth, int low, int high) {
+		while (low < high) {
+			long pivot = keys[(low + high) >>> 1];
+			int left = low;
+			int right = high;
+			while (left <= right) {
+				while (keys[left] < pivot) {
+					left++;
+				}
+				while (keys[right] > pivot) {
+					right--;
+				}
+				if (left <= right) {
+					swap(keys, values, valueWidth, left, right);
+					left++;
+					right--;
+				}
+			}
+			// recurse into smaller part to limit stack depth
+			if (right - low < high - left) {
+				sortByKey(keys, values, valueWidth, low, right);
+				low = left;
+			} else {
+				sortByKey(keys, values, valueWidth, left, high);
+				high = right;
+			}
+		}
+	}
+
+	private static void swap(long[] keys, long[] values, int valueWidth, int a, int b) {
+		long tempKey = keys[a];
+		keys[a] = keys[b];
+		keys[b] = tempKey;
+		for (int i = 0; i < valueWidth; i++) {
+			long tempValue = values[a * valueWidth + i];
+			values[a * valueWidth + i] = values[b * valueWidth + i];
+			values[b * valueWidth + i] = tempValue;
+		}
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the entry name with a final avalanche step, collisions between class names of two compared jars
+	 * are practically impossible.
+	 */
+	static long nameId(String entryName) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < entryName.length(); i++) {
+			hash ^= entryName.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private final long[] nameIds;
+	private final long[] digests;
+
+	private ClassHashes(long[] nameIds, long[] digests) {
+		this.nameIds = nameIds;
+		this.digests = digests;
+	}
+
+	public int size() {
+		return nameIds.length;
+	}
+
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(nameIds.length);
+		for (int i = 0; i < nameIds.length; i++) {
+			out.writeLong(nameIds[i]);
+		}
+		for (int i = 0; i < digests.length; i++) {
+			out.writeLong(digests[i]);
+		}
+	}
+
+	public static ClassHashes readFrom(DataInput in) throws IOException {
+		int size = in.readInt();
+		if (size == 0) {
+			return EMPTY;
+		}
+		var nameIds = new long[size];
+		var digests = new long[size * DIGEST_LONGS];
+		for (int i = 0; i < nameIds.length; i++) {
+			nameIds[i] = in.readLong();
+		}
+		for (int i = 0; i < digests.length; i++) {
+			digests[i] = in.readLong();
+		}
+		return new ClassHashes(nameIds, digests);
+	}
+
+	/**
+	 * @return true if both jars contain classes with the same names and each class has identical content.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		ClassHashes other = (ClassHashes) obj;
+		return Arrays.equals(nameIds, other.nameIds)
+				&& Arrays.equals(digests, other.digests);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(digests);
+	}
+}
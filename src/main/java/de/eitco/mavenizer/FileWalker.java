@@ -0,0 +1,183 @@
+package de.eitco.mavenizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds files in folders recursively, listing multiple folders in parallel. This mostly helps on network file systems, where each
+ * directory listing and each file attribute lookup has high latency.
+ * <br>
+ * The returned order does not depend on thread scheduling: Folders given as arguments are walked in given order, files of a folder
+ * come before files of its sub-folders, and entries of a folder are returned in the order the file system lists them.
+ * With a maximum depth of 1, result is the same as {@link Util#getFiles(List, Predicate)}.
+ * <br>
+ * Symbolic links to folders are followed. Like {@link Files#walk(Path, java.nio.file.FileVisitOption...)}, a folder is only skipped if it is
+ * the same as one of its own parent folders (which would cause an endless loop), so a folder reachable by multiple paths is walked for each path.
+ */
+public class FileWalker {
+
+	private static class Listing {
+		final List<Path> files = new ArrayList<>();
+		final List<Path> subDirs = new ArrayList<>();
+		final List<Ancestors> subDirAncestors = new ArrayList<>();
+	}
+	
+	/**
+	 * File keys of a folder and all its parent folders up to the walked root, used to detect loops.
+	 */
+	private static class Ancestors {
+		final Object fileKey;// null if file system does not provide file keys
+		final Ancestors parent;
+		
+		Ancestors(Object fileKey, Ancestors parent) {
+			this.fileKey = fileKey;
+			this.parent = parent;
+		}
+		
+		boolean contains(Object key) {
+			for (var current = this; current != null; current = current.parent) {
+				if (key.equals(current.fileKey)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private final int maxDepth;
+	private final Predicate<Path> fileFilter;
+	private final Predicate<Path> dirFilter;
+	private final int threadCount;
+
+	/**
+	 * @param maxDepth 1 means that only files directly inside given folders are found.
+	 * @param fileFilter Called with path of each file relative to the given folder it was found in.
+	 * @param dirFilter Called with path of each sub-folder relative to the given folder it was found in. Rejected folders are not listed at all.
+	 */
+	public FileWalker(int maxDepth, Predicate<Path> fileFilter, Predicate<Path> dirFilter, int threadCount) {
+		this.maxDepth = maxDepth;
+		this.fileFilter = fileFilter;
+		this.dirFilter = dirFilter;
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * If argument contains paths to files, those files are returned without filtering.
+	 * If argument contains paths to folders, all files inside those folders up to the maximum depth that pass the filters are also returned.
+	 * @param onFile Called for each file as soon as it is found, possibly from multiple threads at once, so that callers can start processing
+	 *   files before walking is complete.
+	 */
+	public List<Path> walk(List<String> filesOrDirs, Consumer<Path> onFile) {
+		var threadCounter = new AtomicInteger(1);
+		ExecutorService pool = Executors.newFixedThreadPool(threadCount, runnable -> {
+			var thread = new Thread(runnable, "file-walker-" + threadCounter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			var results = new ArrayList<CompletableFuture<List<Path>>>();
+			for (var fileOrDirString : filesOrDirs) {
+				Path fileOrDir = Paths.get(fileOrDirString);
+				if (Files.isDirectory(fileOrDir)) {
+					var ancestors = new Ancestors(readAttributes(fileOrDir).fileKey(), null);
+					results.add(walkDir(fileOrDir, fileOrDir, 1, ancestors, pool, onFile));
+				} else if (Files.isRegularFile(fileOrDir)) {
+					onFile.accept(fileOrDir);
+					results.add(CompletableFuture.completedFuture(List.of(fileOrDir)));
+				}
+			}
+			return results.stream()
+					.flatMap(result -> result.join().stream())
+					.collect(Collectors.toList());
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private CompletableFuture<List<Path>> walkDir(Path root, Path dir, int depth, Ancestors ancestors, ExecutorService pool, Consumer<Path> onFile) {
+		return CompletableFuture.supplyAsync(() -> listDir(root, dir, depth, ancestors, onFile), pool)
+				.thenCompose(listing -> {
+					// sub-folders are listed in parallel, but their results are concatenated in listing order
+					var subResults = IntStream.range(0, listing.subDirs.size())
+							.mapToObj(i -> walkDir(root, listing.subDirs.get(i), depth + 1, listing.subDirAncestors.get(i), pool, onFile))
+							.collect(Collectors.toList());
+					return CompletableFuture.allOf(subResults.toArray(CompletableFuture[]::new))
+							.thenApply(__ -> {
+								var result = new ArrayList<>(listing.files);
+								for (var subResult : subResults) {
+									result.addAll(subResult.join());
+								}
+								return result;
+							});
+				});
+	}
+
+	private Listing listDir(Path root, Path dir, int depth, Ancestors ancestors, Consumer<Path> onFile) {
+		var listing = new Listing();
+		boolean descend = depth < maxDepth;
+		try (var entries = Files.newDirectoryStream(dir)) {
+			for (var entry : entries) {
+				var relative = root.relativize(entry);
+				if (!descend) {
+					// file filter usually only needs the name, so we can avoid reading attributes of most entries
+					if (fileFilter.test(relative) && Files.isRegularFile(entry)) {
+						listing.files.add(entry);
+						onFile.accept(entry);
+					}
+					continue;
+				}
+				BasicFileAttributes attributes;
+				try {
+					attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+				} catch (NoSuchFileException e) {
+					// broken symbolic link or file deleted since listing
+					continue;
+				}
+				if (attributes.isDirectory()) {
+					// file key prevents endless loops caused by symbolic links, if file system provides one
+					// (only parents of this folder are checked, so result does not depend on which thread lists a folder first)
+					var fileKey = attributes.fileKey();
+					if (dirFilter.test(relative) && (fileKey == null || !ancestors.contains(fileKey))) {
+						listing.subDirs.add(entry);
+						listing.subDirAncestors.add(new Ancestors(fileKey, ancestors));
+					}
+				} else if (attributes.isRegularFile() && fileFilter.test(relative)) {
+					listing.files.add(entry);
+					onFile.accept(entry);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return listing;
+	}
+
+	private static BasicFileAttributes readAttributes(Path path) {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package de.eitco.mavenizer;
+
+/**
+ * Algorithm used to compute the hash of a whole jar. Jar hashes can only be compared if they were computed with the same version.
+ */
+public enum FingerprintVersion {
+
+	/**
+	 * SHA-256 of the concatenated uncompressed content of all entries in physical jar order. Entries must be hashed one after another.
+	 */
+	V1,
+
+	/**
+	 * SHA-256 over name and SHA-256 digest of each file entry, sorted by name. Does not depend on entry order, so jars that were
+	 * re-zipped with reordered entries keep their hash, and entries of a single jar can be hashed by multiple threads.
+	 */
+	V2;
+}
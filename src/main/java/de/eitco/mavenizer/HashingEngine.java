@@ -0,0 +1,190 @@
+package de.eitco.mavenizer;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Per-thread pool of the objects needed to hash jar entries: a copy buffer, an {@link Inflater} and SHA-256 digests.
+ * Each thread that hashes entries gets its own engine by calling {@link #current()}, so objects are reused without contended locking.
+ * <br>
+ * Objects are borrowed and must be returned on the same thread, except inflaters: Entry streams might be closed by another thread than
+ * the one that opened them, so inflaters are returned to the engine they were borrowed from by any thread (which is synchronized).
+ * If an object is borrowed while the engine's own object is already in use
+ * (for example two entry streams open at the same time), a new object is created and discarded when returned.
+ * Creations are counted over all threads, see {@link #stats()}, so that reuse can be verified: Under sustained load the number of created
+ * objects should stay flat while the number of hashed entries grows.
+ */
+public final class HashingEngine {
+	
+	public static final int BUFFER_SIZE = 8192 * 4;
+	
+	private static final int MAX_POOLED_DIGESTS = 8;
+	
+	private static final ThreadLocal<HashingEngine> ENGINES = ThreadLocal.withInitial(HashingEngine::new);
+	
+	private static final LongAdder CREATED_ENGINES = new LongAdder();
+	private static final LongAdder HASHED_ENTRIES = new LongAdder();
+	private static final LongAdder HASHED_BYTES = new LongAdder();
+	private static final LongAdder CREATED_BUFFERS = new LongAdder();
+	private static final LongAdder CREATED_INFLATERS = new LongAdder();
+	private static final LongAdder CREATED_DIGESTS = new LongAdder();
+	
+	public static class Stats {
+		public final long engines;
+		public final long entries;
+		public final long bytes;
+		public final long buffersCreated;
+		public final long inflatersCreated;
+		public final long digestsCreated;
+		
+		public Stats(long engines, long entries, long bytes, long buffersCreated, long inflatersCreated, long digestsCreated) {
+			this.engines = engines;
+			this.entries = entries;
+			this.bytes = bytes;
+			this.buffersCreated = buffersCreated;
+			this.inflatersCreated = inflatersCreated;
+			this.digestsCreated = digestsCreated;
+		}
+		
+		/**
+		 * @return Number of created buffers, inflaters and digests per 1000 hashed entries.
+		 */
+		public double createdPerThousandEntries() {
+			return entries == 0 ? 0 : (buffersCreated + inflatersCreated + digestsCreated) * 1000.0 / entries;
+		}
+		
+		@Override
+		public String toString() {
+			return "Hashed " + entries + " entries (" + (bytes / (1024 * 1024)) + " MB) on " + engines + " threads, created "
+					+ buffersCreated + " buffers, " + inflatersCreated + " inflaters, " + digestsCreated + " digests ("
+					+ String.format("%.2f", createdPerThousandEntries()) + " per 1000 entries).";
+		}
+	}
+	
+	private final MessageDigest prototype;
+	private byte[] buffer = null;// null while borrowed
+	private Inflater inflater = null;// null while borrowed
+	private final ArrayDeque<MessageDigest> digests = new ArrayDeque<>();
+	
+	private HashingEngine() {
+		try {
+			prototype = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		CREATED_ENGINES.increment();
+	}
+	
+	/**
+	 * @return Engine of the calling thread.
+	 */
+	public static HashingEngine current() {
+		return ENGINES.get();
+	}
+	
+	/**
+	 * @return Creation counts of all engines since start of the program.
+	 */
+	public static Stats stats() {
+		return new Stats(CREATED_ENGINES.sum(), HASHED_ENTRIES.sum(), HASHED_BYTES.sum(), CREATED_BUFFERS.sum(), CREATED_INFLATERS.sum(), CREATED_DIGESTS.sum());
+	}
+	
+	/**
+	 * Counts an entry whose content was hashed, see {@link #stats()}.
+	 */
+	public static void countEntry(long size) {
+		HASHED_ENTRIES.increment();
+		HASHED_BYTES.add(size);
+	}
+	
+	public byte[] borrowBuffer() {
+		var borrowed = buffer;
+		if (borrowed == null) {
+			CREATED_BUFFERS.increment();
+			return new byte[BUFFER_SIZE];
+		}
+		buffer = null;
+		return borrowed;
+	}
+	
+	public void returnBuffer(byte[] borrowed) {
+		buffer = borrowed;
+	}
+	
+	/**
+	 * @return Inflater for raw DEFLATE data ("nowrap"), without input.
+	 */
+	public synchronized Inflater borrowInflater() {
+		var borrowed = inflater;
+		if (borrowed == null) {
+			CREATED_INFLATERS.increment();
+			return new Inflater(true);
+		}
+		inflater = null;
+		return borrowed;
+	}
+	
+	/**
+	 * Can be called by any thread, see class description.
+	 */
+	public synchronized void returnInflater(Inflater borrowed) {
+		if (inflater == null) {
+			borrowed.reset();
+			inflater = borrowed;
+		} else {
+			borrowed.end();
+		}
+	}
+	
+	/**
+	 * @return Empty SHA-256 digest.
+	 */
+	public MessageDigest borrowDigest() {
+		var borrowed = digests.pollLast();
+		if (borrowed == null) {
+			CREATED_DIGESTS.increment();
+			try {
+				return (MessageDigest) prototype.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return borrowed;
+	}
+	
+	public void returnDigest(MessageDigest borrowed) {
+		if (digests.size() < MAX_POOLED_DIGESTS) {
+			borrowed.reset();
+			digests.addLast(borrowed);
+		}
+	}
+	
+	/**
+	 * @return SHA-256 of the uncompressed content of the given entry.
+	 */
+	public byte[] digest(JarSource source, ZipEntry entry) {
+		var digest = borrowDigest();
+		try {
+			source.digest(entry, digest);
+			return digest.digest();
+		} finally {
+			returnDigest(digest);
+		}
+	}
+	
+	/**
+	 * @return SHA-256 of the given content.
+	 */
+	public byte[] digest(byte[] content) {
+		var digest = borrowDigest();
+		try {
+			return digest.digest(content);
+		} finally {
+			returnDigest(digest);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package de.eitco.mavenizer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+
+/**
+ * CRC-32 checksums and uncompressed sizes of jar entries as stored in the zip central directory, which can be read without inflating any entry.
+ * <br>
+ * Equal content always has equal checksums, so two jars whose checksums differ in the right places can be rejected as non-identical
+ * before computing any SHA-256 (see {@link #mayHaveSameJarHash(JarChecksums, FingerprintVersion)} and {@link #mayHaveSameClassHashes(JarChecksums)}).
+ * Equal checksums on the other hand do not prove identical content, so SHA-256 comparison is still needed in that case.
+ */
+public final class JarChecksums {
+
+	public static final JarChecksums EMPTY = new Builder().build();
+
+	/**
+	 * Collects checksums of entries, which must be passed in jar order. Not thread-safe.
+	 */
+	public static class Builder {
+		private long totalSize = 0;
+		private long[] entrySizes = new long[64];
+		private int[] entryCrcs = new int[64];
+		private int entryCount = 0;
+		private long[] classNameIds = new long[64];
+		private long[] classChecksums = new long[64];
+		private int classCount = 0;
+
+		public void add(ZipEntry entry) {
+			if (entry.isDirectory()) {
+				return;
+			}
+			long size = entry.getSize();
+			int crc = (int) entry.getCrc();
+			if (size > 0) {
+				// entries without content do not change jar hash
+				if (entryCount == entrySizes.length) {
+					entrySizes = Arrays.copyOf(entrySizes, entryCount * 2);
+					entryCrcs = Arrays.copyOf(entryCrcs, entryCount * 2);
+				}
+				totalSize += size;
+				entrySizes[entryCount] = size;
+				entryCrcs[entryCount] = crc;
+				entryCount++;
+			}
+			if (entry.getName().toLowerCase().endsWith(".class")) {
+				if (classCount == classNameIds.length) {
+					classNameIds = Arrays.copyOf(classNameIds, classCount * 2);
+					classChecksums = Arrays.copyOf(classChecksums, classCount * 2);
+				}
+				classNameIds[classCount] = ClassHashes.nameId(entry.getName());
+				classChecksums[classCount] = ((long) crc << 32) | (size & 0xFFFFFFFFL);
+				classCount++;
+			}
+		}
+
+		public JarChecksums build() {
+			if (classCount > 0) {
+				ClassHashes.sortByKey(classNameIds, classChecksums, 1, 0, classCount - 1);
+			}
+			boolean duplicateClassNames = false;
+			for (int i = 1; i < classCount; i++) {
+				if (classNameIds[i] == classNameIds[i - 1]) {
+					duplicateClassNames = true;
+					break;
+				}
+			}
+			return new JarChecksums(totalSize,
+					Arrays.copyOf(entrySizes, entryCount), Arrays.copyOf(entryCrcs, entryCount),
+					Arrays.copyOf(classNameIds, classCount), Arrays.copyOf(classChecksums, classCount),
+					duplicateClassNames);
+		}
+	}
+
+	public static JarChecksums of(JarSource source) {
+		var builder = new Builder();
+		for (var entry : source.entries()) {
+			builder.add(entry);
+		}
+		return builder.build();
+	}
+
+	private final long totalSize;
+	private final long[] entrySizes;
+	private final int[] entryCrcs;
+	private final long[] classNameIds;// sorted
+	private final long[] classChecksums;// CRC-32 in upper and size in lower half
+	private final boolean duplicateClassNames;
+
+	private JarChecksums(long totalSize, long[] entrySizes, int[] entryCrcs, long[] classNameIds, long[] classChecksums, boolean duplicateClassNames) {
+		this.totalSize = totalSize;
+		this.entrySizes = entrySizes;
+		this.entryCrcs = entryCrcs;
+		this.classNameIds = classNameIds;
+		this.classChecksums = classChecksums;
+		this.duplicateClassNames = duplicateClassNames;
+	}
+
+	/**
+	 * Jar hash is computed from the concatenated content of all entries. It can only be equal if total size is equal.
+	 * If both jars have entries of equal sizes in equal order, it can also only be equal if the checksums of all entries are equal.
+	 * @return false if jars definitely have different jar hashes.
+	 */
+	public boolean mayHaveSameJarSha256(JarChecksums other) {
+		if (totalSize != other.totalSize) {
+			return false;
+		}
+		if (Arrays.equals(entrySizes, other.entrySizes)) {
+			return Arrays.equals(entryCrcs, other.entryCrcs);
+		}
+		// entries are split differently, concatenated content might still be equal
+		return true;
+	}
+
+	/**
+	 * Hash of version 2 is computed from the content of all entries regardless of order. It can only be equal if both jars contain
+	 * entries with equal checksums in any order.
+	 * @return false if jars definitely have different jar hashes of the given version.
+	 */
+	public boolean mayHaveSameJarHash(JarChecksums other, FingerprintVersion version) {
+		if (version == FingerprintVersion.V1) {
+			return mayHaveSameJarSha256(other);
+		}
+		return totalSize == other.totalSize
+				&& Arrays.equals(sortedEntryChecksums(), other.sortedEntryChecksums());
+	}
+	
+	private long[] sortedEntryChecksums() {
+		var result = new long[entrySizes.length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ((long) entryCrcs[i] << 32) | (entrySizes[i] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * @return false if jars definitely have different {@link ClassHashes}.
+	 */
+	public boolean mayHaveSameClassHashes(JarChecksums other) {
+		if (duplicateClassNames || other.duplicateClassNames) {
+			// class hashes only keep one of the duplicates, which we cannot reproduce here
+			return true;
+		}
+		return Arrays.equals(classNameIds, other.classNameIds)
+				&& Arrays.equals(classChecksums, other.classChecksums);
+	}
+
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeLong(totalSize);
+		out.writeInt(entrySizes.length);
+		for (int i = 0; i < entrySizes.length; i++) {
+			out.writeLong(entrySizes[i]);
+			out.writeInt(entryCrcs[i]);
+		}
+		out.writeInt(classNameIds.length);
+		for (int i = 0; i < classNameIds.length; i++) {
+			out.writeLong(classNameIds[i]);
+			out.writeLong(classChecksums[i]);
+		}
+		out.writeBoolean(duplicateClassNames);
+	}
+
+	public static JarChecksums readFrom(DataInput in) throws IOException {
+		var totalSize = in.readLong();
+		var entrySizes = new long[in.readInt()];
+		var entryCrcs = new int[entrySizes.length];
+		for (int i = 0; i < entrySizes.length; i++) {
+			entrySizes[i] = in.readLong();
+			entryCrcs[i] = in.readInt();
+		}
+		var classNameIds = new long[in.readInt()];
+		var classChecksums = new long[classNameIds.length];
+		for (int i = 0; i < classNameIds.length; i++) {
+			classNameIds[i] = in.readLong();
+			classChecksums[i] = in.readLong();
+		}
+		var duplicateClassNames = in.readBoolean();
+		return new JarChecksums(totalSize, entrySizes, entryCrcs, classNameIds, classChecksums, duplicateClassNames);
+	}
+}
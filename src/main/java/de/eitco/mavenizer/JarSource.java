@@ -0,0 +1,593 @@
+package de.eitco.mavenizer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Random access to the entries of a jar file. Entries are returned in the order in which they are physically stored in the jar,
+ * which is the same order in which a {@link java.util.zip.ZipInputStream} would return them.
+ * <br>
+ * Jars are memory-mapped if possible, so that jar content never needs to be copied onto the heap as a whole.
+ * Jars that cannot be mapped (bigger than 2 GB, Zip64 format) are read with {@link ZipFile} instead.
+ * Implementations are thread-safe, entries can be read concurrently.
+ * <br>
+ * Files that are not valid zip files are read as empty jars, same as {@link java.util.zip.ZipInputStream} would.
+ */
+public abstract class JarSource implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(JarSource.class);
+
+	/**
+	 * Opens the given jar file, memory-mapping it if possible.
+	 * <br>
+	 * Mapping is released when source and all entry streams opened from it are closed. If a buffer returned by {@link #readEntry(ZipEntry)}
+	 * shares memory with the mapping, or if the JVM does not allow to unmap buffers, mapping is only released by the garbage collector.
+	 * On Windows a mapped file cannot be deleted while it is mapped, so temporary files that must be deleted should be opened with
+	 * {@link #openUnmapped(Path)}.
+	 */
+	public static JarSource open(Path jarFile) {
+		try (var channel = FileChannel.open(jarFile, StandardOpenOption.READ)) {
+			var size = channel.size();
+			if (size <= Integer.MAX_VALUE) {
+				// mapping stays valid after channel is closed
+				var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				var source = MappedJarSource.tryParse(mapped, true);
+				if (source != null) {
+					return source;
+				}
+			}
+		} catch (ZipException e) {
+			// ZipFile decides whether jar can be read at all
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return openUnmapped(jarFile);
+	}
+
+	/**
+	 * Opens the given jar file with {@link ZipFile}, which releases the file when source is closed.
+	 */
+	public static JarSource openUnmapped(Path jarFile) {
+		try {
+			return new ZipFileJarSource(new ZipFile(jarFile.toFile()));
+		} catch (ZipException e) {
+			LOG.warn("Jar '" + jarFile + "' is not a valid zip file (" + e.getMessage() + "), reading it as empty jar.");
+			return new MappedJarSource(ByteBuffer.allocate(0), List.of(), null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Opens a jar whose content is already in memory or mapped, for example a jar nested inside another archive.
+	 * @return empty if jar cannot be read from a buffer (Zip64), in which case it must be written to a file and opened with {@link #open(Path)}.
+	 */
+	public static Optional<JarSource> open(ByteBuffer content) {
+		try {
+			return Optional.ofNullable(MappedJarSource.tryParse(content, false));
+		} catch (ZipException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return All entries (including directories) in physical jar order.
+	 */
+	public abstract List<ZipEntry> entries();
+
+	/**
+	 * @return Stream of uncompressed entry content. Must be closed by caller.
+	 */
+	public abstract InputStream openEntry(ZipEntry entry);
+
+	/**
+	 * Feeds the uncompressed content of the given entry into all given digests.
+	 */
+	public void digest(ZipEntry entry, MessageDigest... digests) {
+		var engine = HashingEngine.current();
+		var buffer = engine.borrowBuffer();
+		long size = 0;
+		try (var in = openEntry(entry)) {
+			int count;
+			while ((count = in.read(buffer)) > 0) {
+				for (var digest : digests) {
+					digest.update(buffer, 0, count);
+				}
+				size += count;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			engine.returnBuffer(buffer);
+		}
+		HashingEngine.countEntry(size);
+	}
+
+	public byte[] readAllBytes(ZipEntry entry) {
+		try (var in = openEntry(entry)) {
+			long size = entry.getSize();
+			if (size < 0 || size > Integer.MAX_VALUE - 8) {
+				return in.readAllBytes();
+			}
+			// size from zip header avoids growing intermediate buffers, but content decides
+			var bytes = in.readNBytes((int) size);
+			int next = bytes.length == size ? in.read() : -1;
+			if (next != -1) {
+				var rest = in.readAllBytes();
+				var all = Arrays.copyOf(bytes, bytes.length + 1 + rest.length);
+				all[bytes.length] = (byte) next;
+				System.arraycopy(rest, 0, all, bytes.length + 1, rest.length);
+				return all;
+			}
+			return bytes;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return Uncompressed content of the given entry as read-only buffer.
+	 */
+	public ByteBuffer readEntry(ZipEntry entry) {
+		return ByteBuffer.wrap(readAllBytes(entry)).asReadOnlyBuffer();
+	}
+
+	@Override
+	public abstract void close();
+
+	/**
+	 * Parses the zip central directory directly from a (usually memory-mapped) buffer.
+	 * STORED entries are digested directly from the buffer, DEFLATED entries are inflated from it without intermediate copy.
+	 * <br>
+	 * If source owns the mapping, the source itself, open entry streams and running digests each count as user of the mapping. Mapping is
+	 * unmapped once the last user is done, unless buffers sharing its memory were handed out, which might still be used after that.
+	 */
+	static class MappedJarSource extends JarSource {
+
+		private static final int LOC_SIGNATURE = 0x04034b50;
+		private static final int CEN_SIGNATURE = 0x02014b50;
+		private static final int END_SIGNATURE = 0x06054b50;
+		private static final int LOC_HEADER_SIZE = 30;
+		private static final int CEN_HEADER_SIZE = 46;
+		private static final int END_HEADER_SIZE = 22;
+		private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+		private static class MappedEntry extends ZipEntry {
+			final int localHeaderOffset;
+			int dataOffset = -1;
+
+			MappedEntry(String name, int localHeaderOffset) {
+				super(name);
+				this.localHeaderOffset = localHeaderOffset;
+			}
+		}
+
+		private final ByteBuffer buffer;
+		private final List<ZipEntry> entries;
+		private final ByteBuffer mapping;// null if mapping is not owned by this source
+		// guarded by this
+		private int users = 1;
+		private boolean closed = false;
+		private boolean shared = false;
+
+		private MappedJarSource(ByteBuffer buffer, List<ZipEntry> entries, ByteBuffer mapping) {
+			this.buffer = buffer;
+			this.entries = entries;
+			this.mapping = mapping;
+		}
+
+		/**
+		 * @param owned True if mapped buffer was created for this source only, so it can be unmapped once source is not used anymore.
+		 *   It is also unmapped if buffer cannot be parsed.
+		 * @return null if buffer does not contain a zip format this class can read (for example Zip64)
+		 */
+		static MappedJarSource tryParse(ByteBuffer mapped, boolean owned) throws ZipException {
+			MappedJarSource source = null;
+			try {
+				source = parse(mapped, owned ? mapped : null);
+				return source;
+			} finally {
+				if (owned && source == null) {
+					Unmapper.unmap(mapped);
+				}
+			}
+		}
+
+		private static MappedJarSource parse(ByteBuffer mapped, ByteBuffer mapping) throws ZipException {
+			var buffer = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			int end = findEndHeader(buffer);
+			if (end < 0) {
+				throw new ZipException("Zip END header not found");
+			}
+			int totalEntries = Short.toUnsignedInt(buffer.getShort(end + 10));
+			long cenSize = Integer.toUnsignedLong(buffer.getInt(end + 12));
+			long cenOffset = Integer.toUnsignedLong(buffer.getInt(end + 16));
+			if (totalEntries == 0xFFFF || cenSize == 0xFFFFFFFFL || cenOffset == 0xFFFFFFFFL) {
+				return null;// Zip64
+			}
+			// jars can have arbitrary data prepended (for example launcher scripts), offsets are relative to zip start
+			long zipStart = end - cenSize - cenOffset;
+			if (zipStart < 0) {
+				throw new ZipException("Invalid zip END header");
+			}
+
+			var entries = new ArrayList<MappedEntry>(totalEntries);
+			int position = (int) (zipStart + cenOffset);
+			while (position < end) {
+				if (buffer.getInt(position) != CEN_SIGNATURE) {
+					throw new ZipException("Invalid zip CEN header");
+				}
+				int method = Short.toUnsignedInt(buffer.getShort(position + 10));
+				long crc = Integer.toUnsignedLong(buffer.getInt(position + 16));
+				long compressedSize = Integer.toUnsignedLong(buffer.getInt(position + 20));
+				long size = Integer.toUnsignedLong(buffer.getInt(position + 24));
+				int nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+				int extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+				int commentLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+				long localHeaderOffset = Integer.toUnsignedLong(buffer.getInt(position + 42));
+				if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+					return null;// Zip64
+				}
+
+				var name = decodeName(buffer, position + CEN_HEADER_SIZE, nameLength);
+				var entry = new MappedEntry(name, (int) (zipStart + localHeaderOffset));
+				entry.setMethod(method);
+				entry.setCrc(crc);
+				entry.setCompressedSize(compressedSize);
+				entry.setSize(size);
+				entries.add(entry);
+
+				position = position + CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+			}
+
+			// ZipInputStream (used for hashing historically) returns entries in physical order
+			entries.sort(Comparator.comparingInt(entry -> entry.localHeaderOffset));
+			for (var entry : entries) {
+				readLocalHeader(buffer, entry);
+			}
+			return new MappedJarSource(buffer, Collections.unmodifiableList(entries), mapping);
+		}
+
+		private static int findEndHeader(ByteBuffer buffer) {
+			int minPosition = Math.max(0, buffer.limit() - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+			for (int position = buffer.limit() - END_HEADER_SIZE; position >= minPosition; position--) {
+				if (buffer.getInt(position) == END_SIGNATURE) {
+					return position;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Takes modification time and extra fields from local header, same as ZipInputStream. Local extra fields can contain
+		 * creation timestamps which are usually omitted from central directory.
+		 */
+		private static void readLocalHeader(ByteBuffer buffer, MappedEntry entry) throws ZipException {
+			int position = entry.localHeaderOffset;
+			if (buffer.getInt(position) != LOC_SIGNATURE) {
+				throw new ZipException("Invalid zip LOC header for entry '" + entry.getName() + "'");
+			}
+			int dosTime = buffer.getInt(position + 10);
+			int nameLength = Short.toUnsignedInt(buffer.getShort(position + 26));
+			int extraLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+			entry.dataOffset = position + LOC_HEADER_SIZE + nameLength + extraLength;
+
+			entry.setTime(dosToJavaTime(dosTime));
+			if (extraLength > 0) {
+				var extra = new byte[extraLength];
+				buffer.duplicate().position(position + LOC_HEADER_SIZE + nameLength).get(extra);
+				entry.setExtra(extra);
+			}
+		}
+
+		/**
+		 * Out-of-range fields (for example month 0) overflow into the next bigger field, same as in ZipInputStream.
+		 */
+		private static long dosToJavaTime(int dosTime) {
+			var dateTime = LocalDateTime.of(((dosTime >> 25) & 0x7f) + 1980, 1, 1, 0, 0, 0)
+					.plusMonths(((dosTime >> 21) & 0x0f) - 1)
+					.plusDays(((dosTime >> 16) & 0x1f) - 1)
+					.plusHours((dosTime >> 11) & 0x1f)
+					.plusMinutes((dosTime >> 5) & 0x3f)
+					.plusSeconds((dosTime << 1) & 0x3e);
+			return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		}
+
+		private static String decodeName(ByteBuffer buffer, int position, int length) {
+			var bytes = new byte[length];
+			buffer.duplicate().position(position).get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private ByteBuffer data(ZipEntry entry) {
+			var mappedEntry = (MappedEntry) entry;
+			int start = mappedEntry.dataOffset;
+			int end = start + (int) entry.getCompressedSize();
+			return buffer.duplicate().position(start).limit(end).slice();
+		}
+
+		@Override
+		public List<ZipEntry> entries() {
+			return entries;
+		}
+
+		@Override
+		public InputStream openEntry(ZipEntry entry) {
+			if (entry.getMethod() != ZipEntry.STORED && entry.getMethod() != ZipEntry.DEFLATED) {
+				throw new UncheckedIOException(new ZipException("Unsupported compression method " + entry.getMethod() + " for entry '" + entry.getName() + "'"));
+			}
+			acquire();
+			try {
+				return entry.getMethod() == ZipEntry.STORED
+						? new ByteBufferInputStream(data(entry), this::release)
+						: new InflatingInputStream(data(entry), this::release);
+			} catch (RuntimeException | Error e) {
+				release();
+				throw e;
+			}
+		}
+
+		@Override
+		public ByteBuffer readEntry(ZipEntry entry) {
+			if (entry.getMethod() == ZipEntry.STORED) {
+				// stored jars inside wars and ears can be read without any copy
+				synchronized (this) {
+					shared = true;
+				}
+				return data(entry).asReadOnlyBuffer();
+			}
+			return super.readEntry(entry);
+		}
+
+		@Override
+		public void digest(ZipEntry entry, MessageDigest... digests) {
+			if (entry.getMethod() == ZipEntry.STORED) {
+				acquire();
+				try {
+					var data = data(entry);
+					for (var digest : digests) {
+						digest.update(data.duplicate());
+					}
+					HashingEngine.countEntry(data.remaining());
+				} finally {
+					release();
+				}
+			} else {
+				super.digest(entry, digests);
+			}
+		}
+
+		private synchronized void acquire() {
+			if (closed) {
+				throw new IllegalStateException("Jar source has already been closed.");
+			}
+			users++;
+		}
+
+		private synchronized void release() {
+			users--;
+			if (users == 0 && mapping != null && !shared) {
+				Unmapper.unmap(mapping);
+			}
+		}
+
+		@Override
+		public synchronized void close() {
+			if (!closed) {
+				closed = true;
+				release();
+			}
+		}
+	}
+
+	static class ZipFileJarSource extends JarSource {
+
+		private final ZipFile zipFile;
+		private final List<ZipEntry> entries;
+
+		private ZipFileJarSource(ZipFile zipFile) {
+			this.zipFile = zipFile;
+			this.entries = Collections.unmodifiableList(Collections.list(zipFile.entries()));
+		}
+
+		@Override
+		public List<ZipEntry> entries() {
+			return entries;
+		}
+
+		@Override
+		public InputStream openEntry(ZipEntry entry) {
+			try {
+				return zipFile.getInputStream(entry);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			try {
+				zipFile.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+		private Runnable onClose;
+
+		ByteBufferInputStream(ByteBuffer buffer, Runnable onClose) {
+			this.buffer = buffer;
+			this.onClose = onClose;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? Byte.toUnsignedInt(buffer.get()) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+		@Override
+		public synchronized void close() {
+			if (onClose != null) {
+				onClose.run();
+				onClose = null;
+			}
+		}
+	}
+
+	/**
+	 * Inflates raw DEFLATE data from a buffer which contains the complete compressed entry.
+	 * Inflater is borrowed from {@link HashingEngine} of the opening thread and returned to that engine when stream is closed,
+	 * even if stream is closed by another thread.
+	 */
+	private static class InflatingInputStream extends InputStream {
+
+		private static final byte[] DUMMY_BYTE = new byte[1];
+
+		private final HashingEngine engine;
+		private final Runnable onClose;
+		private Inflater inflater;
+		private boolean dummyByteAdded = false;
+		private final byte[] single = new byte[1];
+
+		InflatingInputStream(ByteBuffer compressed, Runnable onClose) {
+			this.onClose = onClose;
+			engine = HashingEngine.current();
+			inflater = engine.borrowInflater();
+			inflater.setInput(compressed);
+		}
+
+		@Override
+		public int read() throws IOException {
+			return read(single, 0, 1) == -1 ? -1 : Byte.toUnsignedInt(single[0]);
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			try {
+				while (true) {
+					if (inflater.finished()) {
+						return -1;
+					}
+					int count = inflater.inflate(bytes, offset, length);
+					if (count > 0) {
+						return count;
+					}
+					if (inflater.needsDictionary()) {
+						throw new ZipException("Inflater needs dictionary");
+					}
+					if (inflater.needsInput()) {
+						if (dummyByteAdded) {
+							throw new EOFException("Unexpected end of compressed entry");
+						}
+						// "nowrap" inflater may need an extra dummy byte to finish, see Inflater documentation
+						inflater.setInput(DUMMY_BYTE);
+						dummyByteAdded = true;
+					}
+				}
+			} catch (DataFormatException e) {
+				throw new ZipException(e.getMessage());
+			}
+		}
+
+		@Override
+		public synchronized void close() {
+			if (inflater != null) {
+				engine.returnInflater(inflater);
+				inflater = null;
+				onClose.run();
+			}
+		}
+	}
+
+	/**
+	 * Releases mapped buffers without waiting for the garbage collector. Java has no public API for this, so the unsupported but exported
+	 * {@code sun.misc.Unsafe#invokeCleaner} is used if available. Buffer must not be accessed anymore after it was unmapped.
+	 */
+	private static final class Unmapper {
+
+		private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+		private static MethodHandle findInvokeCleaner() {
+			try {
+				var unsafeClass = Class.forName("sun.misc.Unsafe");
+				var theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				return MethodHandles.lookup()
+						.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+						.bindTo(theUnsafe.get(null));
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				LOG.debug("Cannot unmap buffers explicitly, mapped jars are released by garbage collector.", e);
+				return null;
+			}
+		}
+
+		static void unmap(ByteBuffer mapping) {
+			if (INVOKE_CLEANER == null) {
+				return;
+			}
+			try {
+				INVOKE_CLEANER.invokeExact(mapping);
+			} catch (RuntimeException e) {
+				LOG.debug("Failed to unmap buffer, it is released by garbage collector.", e);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
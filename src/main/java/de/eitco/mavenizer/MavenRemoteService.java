@@ -1,25 +1,36 @@
 package de.eitco.mavenizer;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Reader;
+import org.apache.maven.artifact.versioning.ComparableVersion;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
 import org.apache.maven.settings.Settings;
 import org.apache.maven.settings.io.xpp3.SettingsXpp3Reader;
+import org.codehaus.plexus.util.xml.pull.MXParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
@@ -37,9 +48,10 @@ import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.aether.resolution.MetadataRequest;
-import org.eclipse.aether.resolution.MetadataResult;
 import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
 import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.MetadataNotFoundException;
 import org.eclipse.aether.transfer.NoRepositoryLayoutException;
 import org.eclipse.aether.transport.file.FileTransporterFactory;
 import org.eclipse.aether.transport.http.HttpTransporterFactory;
@@ -52,16 +64,89 @@ public class MavenRemoteService {
 
 	private static final Logger LOG = LoggerFactory.getLogger(MavenRemoteService.class);
 	
+	/**
+	 * State of a single download request until it starts. Each request has its own instance, so that a cancelled request never affects a
+	 * later request for the same UID. Guarded by onlineJarCache.
+	 */
+	private static class NotStartedDownload {
+		int requesters = 1;
+		boolean cancelled = false;
+	}
+	
+	/**
+	 * Thrown if a jar that was looked up in a previous run cannot be downloaded anymore when its hashes are needed.
+	 */
+	public static class JarUnavailableException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		
+		public JarUnavailableException(MavenUid uid, Throwable cause) {
+			super("Jar " + uid + " could not be downloaded again.", cause);
+		}
+	}
+	
 	public static class OnlineJarResult {
 		public final String url;
-		public final JarHashes hashes;
+		public final long size;
+		public final JarChecksums checksums;
+		private File downloaded;
+		private Supplier<File> download;
+		private JarUnavailableException unavailable;
+		private final Map<FingerprintVersion, JarHashes> hashes = new EnumMap<>(FingerprintVersion.class);
 		
-		public OnlineJarResult(String url, File downloaded, JarHashes hashes) {
+		public OnlineJarResult(String url, File downloaded, JarChecksums checksums) {
 			this.url = url;
-			this.hashes = hashes;
+			this.size = downloaded.length();
+			this.downloaded = downloaded;
+			this.checksums = checksums;
+		}
+		
+		/**
+		 * For results that were looked up in a previous run, jar is only downloaded if hashes are needed that were not cached.
+		 */
+		public OnlineJarResult(String url, long size, Supplier<File> download, JarChecksums checksums) {
+			this.url = url;
+			this.size = size;
+			this.download = download;
+			this.checksums = checksums;
+		}
+		
+		/**
+		 * Hashes are only computed on first call, because most downloaded jars can already be rejected by comparing {@link #checksums}.
+		 * @throws JarUnavailableException If hashes were not cached and jar cannot be downloaded anymore.
+		 */
+		public synchronized JarHashes getHashes(FingerprintVersion version) {
+			return hashes.computeIfAbsent(version, key -> Util.sha256(getDownloaded(), key));
+		}
+		
+		synchronized Map<FingerprintVersion, JarHashes> getHashesIfComputed() {
+			return Map.copyOf(hashes);
+		}
+		
+		synchronized void putHashes(Map<FingerprintVersion, JarHashes> cachedHashes) {
+			hashes.putAll(cachedHashes);
+		}
+		
+		synchronized File getDownloaded() {
+			if (unavailable != null) {
+				throw unavailable;
+			}
+			if (downloaded == null) {
+				try {
+					downloaded = download.get();
+				} catch (JarUnavailableException e) {
+					unavailable = e;
+					throw e;
+				} finally {
+					download = null;
+				}
+			}
+			return downloaded;
 		}
 	}
 	
+	// metadata files bigger than this (thousands of versions) are read with a pull parser that only collects versions instead of the whole model
+	private static final long STREAMING_METADATA_THRESHOLD = 64 * 1024;
+	
 	private final MavenUid onlineRepoTestJar = new MavenUid("junit", "junit", "4.12");
 	
 	private final Path TEMP_REPO_PATH =  Paths.get("./eitco-mavenizer-temp-m2");
@@ -76,6 +161,7 @@ public class MavenRemoteService {
 	private final LocalRepositoryManager localTempRepoManager;
 	
 	private final boolean isWindows;
+	private final Optional<RemoteLookupCache> lookupCache;
 	
 	private final List<RemoteRepository> remoteRepos = Collections.synchronizedList(new ArrayList<>());
 	
@@ -85,10 +171,18 @@ public class MavenRemoteService {
 	private final CompletableFuture<?> onOnlineAccessChecked;
 	
 	private final Map<MavenUid, CompletableFuture<Optional<OnlineJarResult>>> onlineJarCache = new ConcurrentHashMap<>();
+	// downloads that did not start yet, guarded by onlineJarCache
+	private final Map<MavenUid, NotStartedDownload> notStartedDownloads = new HashMap<>();
+	// versions of each UID without version, empty if no versions were found
+	private final Map<MavenUid, CompletableFuture<List<String>>> versionsCache = new ConcurrentHashMap<>();
 	
 	
-	public MavenRemoteService(Optional<List<String>> customRemoteRepos) {
+	/**
+	 * @param lookupCache If present, jar and version lookups are answered from given cache if possible, and their results are added to it.
+	 */
+	public MavenRemoteService(Optional<List<String>> customRemoteRepos, Optional<RemoteLookupCache> lookupCache) {
 		isWindows = Util.isWindows();
+		this.lookupCache = lookupCache;
 		
 		resolverServiceLocator = MavenRepositorySystemUtils.newServiceLocator();
 		
@@ -151,7 +245,12 @@ public class MavenRemoteService {
 	}
 	
 	public void shutdown() {
-		onlineJarCache.clear();
+		synchronized (onlineJarCache) {
+			notStartedDownloads.values().forEach(download -> download.cancelled = true);
+			notStartedDownloads.clear();
+			onlineJarCache.clear();
+		}
+		versionsCache.clear();
 		Util.run(() -> {
 			onRemoteReposConfigured.cancel(true);
 			onSettingsFileWritten.get(5, TimeUnit.SECONDS);
@@ -240,41 +339,102 @@ public class MavenRemoteService {
 		// Synchronize to make sure that we never have two parallel remote searches/downloads of the same UID.
 		// If we had, the second search might hit local temp repo instead of remote repo, causing downloadJarBlocking to fail to extract the remote URL.
 		synchronized (onlineJarCache) {
+			var notStarted = notStartedDownloads.get(uid);
+			if (notStarted != null) {
+				notStarted.requesters++;
+			}
 			return onlineJarCache.computeIfAbsent(uid, key -> {
+				var download = new NotStartedDownload();
+				notStartedDownloads.put(uid, download);
 				return fullyInitialized().thenApplyAsync(__ -> {
-					return downloadJarBlocking(uid, false);
+					synchronized (onlineJarCache) {
+						if (download.cancelled) {
+							return Optional.empty();// cancelled right before start, result is discarded anyway
+						}
+						notStartedDownloads.remove(uid, download);
+					}
+					return downloadJarCached(uid);
 				});
 			});
 		}
 	}
+	
+	/**
+	 * Tells this service that a caller of {@link #downloadJar(MavenUid, boolean)} does not need the result anymore.
+	 * Download is cancelled if it did not start yet and no other caller is waiting for it, otherwise it continues normally.
+	 * @return True if download was cancelled.
+	 */
+	public boolean releaseJar(MavenUid uid) {
+		synchronized (onlineJarCache) {
+			var notStarted = notStartedDownloads.get(uid);
+			if (notStarted == null) {
+				return false;
+			}
+			if (notStarted.requesters > 1) {
+				notStarted.requesters--;
+				return false;
+			} else {
+				notStartedDownloads.remove(uid);
+				notStarted.cancelled = true;
+				onlineJarCache.remove(uid).cancel(false);
+				LOG.debug("Cancelled download of " + uid + " before it started.");
+				return true;
+			}
+		}
+	}
 		
+	/**
+	 * Uses remote lookup cache if available. Jars that were not found are only added to cache if all repositories answered that jar
+	 * does not exist, so that failed transfers are retried in the next run.
+	 */
+	private Optional<OnlineJarResult> downloadJarCached(MavenUid uid) {
+		if (lookupCache.isEmpty()) {
+			return downloadJarBlocking(uid, false);
+		}
+		var cache = lookupCache.get();
+		var repos = getRemoteRepos();
+		var cached = cache.getJar(uid, repos, () -> {
+			try {
+				return downloadJarBlocking(uid, true).get().getDownloaded();
+			} catch (RuntimeException e) {
+				// artifact might have been removed, so it should be looked up again in next run
+				LOG.warn("Failed to download previously found jar " + uid + " again, removing it from remote lookup cache.", e);
+				cache.removeJar(uid, repos);
+				throw new JarUnavailableException(uid, e);
+			}
+		});
+		if (cached.isPresent()) {
+			LOG.debug("Jar lookup of " + uid + " answered by remote lookup cache.");
+			return cached.get();
+		}
+		var artifact = new DefaultArtifact(uid.groupId, uid.artifactId, "jar", uid.version);
+		try {
+			var result = resolveJarBlocking(uid, artifact);
+			if (result.isPresent()) {
+				cache.putJar(uid, repos, result);
+				return result;
+			}
+		} catch (ArtifactResolutionException e) {
+			var notFound = e.getResults().stream()
+					.flatMap(response -> response.getExceptions().stream())
+					.allMatch(ArtifactNotFoundException.class::isInstance);
+			if (notFound) {
+				cache.putJar(uid, repos, Optional.empty());
+			}
+		}
+		LOG.debug("Jar not found for " + uid + ".");
+		return Optional.empty();
+	}
+	
 	private Optional<OnlineJarResult> downloadJarBlocking(MavenUid uid, boolean throwOnFail) {
 		var artifact = new DefaultArtifact(uid.groupId, uid.artifactId, "jar", uid.version);
-		var request = new ArtifactRequest(artifact, remoteRepos, null);
-	    ArtifactResult response;
 		try {
-			response = repoSystem.resolveArtifact(repoSystemSession, request);
-			if (response.isResolved()) {
-				LOG.debug("Sucess! Jar found for " + uid + " in repo: " + response.getRepository());
-				try {
-					String url;
-					var repo = response.getRepository();
-					if (repo instanceof RemoteRepository) {
-						var remote = (RemoteRepository) response.getRepository();
-						var layout = repoLayoutProvider.newRepositoryLayout(repoSystemSession, remote);
-						url = remote.getUrl() + layout.getLocation(artifact, false).toString();
-					} else {
-						throw new IllegalStateException("Jar '" + uid + "' was retrieved from local reporitory, but lookup should have been cached instead! Cannot return remote URL.");
-					}
-					var file = response.getArtifact().getFile();
-					return Optional.of(new OnlineJarResult(url, file, Util.sha256(file)));
-				} catch (NoRepositoryLayoutException e) {
-					throw new RuntimeException();
-				}
-			} else {
-				if (throwOnFail) {
-					throw new UncheckedIOException(new IOException("Could not resolve artifact '" + artifact + "' online!"));
-				}
+			var result = resolveJarBlocking(uid, artifact);
+			if (result.isPresent()) {
+				return result;
+			}
+			if (throwOnFail) {
+				throw new UncheckedIOException(new IOException("Could not resolve artifact '" + artifact + "' online!"));
 			}
 		} catch (ArtifactResolutionException e) {
 			if (throwOnFail) {
@@ -286,29 +446,141 @@ public class MavenRemoteService {
 		return Optional.empty();
 	}
 	
-	public List<String> downloadVersionsBlocking(MavenUid uidWithoutVersion) {
-		if (!fullyInitialized().isDone()) {
-			throw new IllegalStateException("Not initialized!");
+	private Optional<OnlineJarResult> resolveJarBlocking(MavenUid uid, DefaultArtifact artifact) throws ArtifactResolutionException {
+		var request = new ArtifactRequest(artifact, remoteRepos, null);
+		ArtifactResult response = repoSystem.resolveArtifact(repoSystemSession, request);
+		if (!response.isResolved()) {
+			return Optional.empty();
 		}
+		LOG.debug("Sucess! Jar found for " + uid + " in repo: " + response.getRepository());
+		try {
+			String url;
+			var repo = response.getRepository();
+			if (repo instanceof RemoteRepository) {
+				var remote = (RemoteRepository) response.getRepository();
+				var layout = repoLayoutProvider.newRepositoryLayout(repoSystemSession, remote);
+				url = remote.getUrl() + layout.getLocation(artifact, false).toString();
+			} else {
+				throw new IllegalStateException("Jar '" + uid + "' was retrieved from local reporitory, but lookup should have been cached instead! Cannot return remote URL.");
+			}
+			var file = response.getArtifact().getFile();
+			JarChecksums checksums;
+			try (var source = JarSource.open(file.toPath())) {
+				checksums = JarChecksums.of(source);
+			}
+			return Optional.of(new OnlineJarResult(url, file, checksums));
+		} catch (NoRepositoryLayoutException e) {
+			throw new RuntimeException();
+		}
+	}
+	
+	/**
+	 * Resolves versions from all remote repositories at the same time and merges them, so versions that only exist in some repositories are
+	 * not lost. Results (including empty results) are cached, so versions of each UID are only resolved once. Concurrent callers for the
+	 * same UID share the request of the first caller. Failed requests are not cached.
+	 * @return Unmodifiable list of versions sorted by Maven version ordering, latest version first, empty if no versions were found.
+	 */
+	public CompletableFuture<List<String>> downloadVersions(MavenUid uidWithoutVersion) {
+		return fullyInitialized().thenCompose(__ -> {
+			var request = new CompletableFuture<List<String>>();
+			var cached = versionsCache.putIfAbsent(uidWithoutVersion, request);
+			if (cached != null) {
+				return cached;
+			}
+			resolveVersions(uidWithoutVersion).whenComplete((versions, error) -> {
+				if (error != null) {
+					versionsCache.remove(uidWithoutVersion, request);
+					request.completeExceptionally(error);
+				} else {
+					request.complete(versions);
+				}
+			});
+			return request;
+		});
+	}
+	
+	private CompletableFuture<List<String>> resolveVersions(MavenUid uidWithoutVersion) {
+		Metadata metadataId = new DefaultMetadata(uidWithoutVersion.groupId, uidWithoutVersion.artifactId, "maven-metadata.xml", Nature.RELEASE);
 		
-	    Metadata metadataId = new DefaultMetadata(uidWithoutVersion.groupId, uidWithoutVersion.artifactId, "maven-metadata.xml", Nature.RELEASE);
-	    
-	    var requestList = new ArrayList<MetadataRequest>(remoteRepos.size());
-	    for (var repo : remoteRepos) {
-	    	requestList.add(new MetadataRequest(metadataId, repo, null));
-	    }
-	    List<MetadataResult> responses = repoSystem.resolveMetadata(repoSystemSession, requestList);
-		for (var response : responses) {
-			if (!response.isResolved()) {
-				continue;
+		List<CompletableFuture<List<String>>> responses;
+		synchronized (remoteRepos) {
+			responses = remoteRepos.stream()
+					.map(repo -> CompletableFuture.supplyAsync(() -> resolveVersionsBlocking(uidWithoutVersion, metadataId, repo)))
+					.collect(Collectors.toList());
+		}
+		// selecting candidates needs oldest and latest version of all repositories, so all responses are needed
+		return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).thenApply(__ -> {
+			var merged = new LinkedHashSet<String>();
+			for (var response : responses) {
+				merged.addAll(response.join());
+			}
+			if (merged.isEmpty()) {
+				LOG.debug("Versions not found for " + uidWithoutVersion + ".");
+				return List.<String>of();
+			}
+			return merged.stream()
+					.map(ComparableVersion::new)
+					.sorted(Comparator.reverseOrder())
+					.map(ComparableVersion::toString)
+					.collect(Collectors.toUnmodifiableList());
+		});
+	}
+	
+	private List<String> resolveVersionsBlocking(MavenUid uidWithoutVersion, Metadata metadataId, RemoteRepository repo) {
+		var cached = lookupCache.flatMap(cache -> cache.getVersions(uidWithoutVersion, repo.getUrl()));
+		if (cached.isPresent()) {
+			LOG.debug("Version lookup of " + uidWithoutVersion + " in repo " + repo + " answered by remote lookup cache.");
+			return cached.get();
+		}
+		var response = repoSystem.resolveMetadata(repoSystemSession, List.of(new MetadataRequest(metadataId, repo, null))).get(0);
+		if (!response.isResolved()) {
+			// failed transfers are not cached, so that they are retried in the next run
+			if (response.getException() == null || response.getException() instanceof MetadataNotFoundException) {
+				lookupCache.ifPresent(cache -> cache.putVersions(uidWithoutVersion, repo.getUrl(), List.of()));
+			}
+			return List.of();
+		}
+		LOG.debug("Sucess! Versions found for " + uidWithoutVersion + " in repo: " + repo);
+		var metadataFile = response.getMetadata().getFile();
+		List<String> versions;
+		if (metadataFile.length() > STREAMING_METADATA_THRESHOLD) {
+			versions = readVersions(metadataFile);
+		} else {
+			versions = Util.parse(in -> new MetadataXpp3Reader().read(in), metadataFile).getVersioning().getVersions();
+		}
+		lookupCache.ifPresent(cache -> cache.putVersions(uidWithoutVersion, repo.getUrl(), versions));
+		return versions;
+	}
+	
+	/**
+	 * Reads only the 'metadata/versioning/versions/version' elements of given metadata file, all other elements are skipped.
+	 */
+	private static List<String> readVersions(File metadataFile) {
+		try (var in = new BufferedInputStream(new FileInputStream(metadataFile))) {
+			var parser = new MXParser();
+			parser.setInput(in, null);
+			var versions = new ArrayList<String>();
+			boolean inVersioning = false;
+			boolean inVersions = false;
+			for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+				if (event != XmlPullParser.START_TAG) {
+					continue;
+				}
+				int depth = parser.getDepth();
+				var name = parser.getName();
+				if (depth == 2) {
+					inVersioning = name.equals("versioning");
+				} else if (depth == 3) {
+					inVersions = inVersioning && name.equals("versions");
+				} else if (depth == 4 && inVersions && name.equals("version")) {
+					versions.add(parser.nextText().trim());
+				}
 			}
-			LOG.debug("Sucess! Versions found for " + uidWithoutVersion + " in repo: " + response.getRequest().getRepository());
-			var metadataFile = response.getMetadata().getFile();
-			var metadata = Util.parse(in -> new MetadataXpp3Reader().read(in), metadataFile);
-			var versions = metadata.getVersioning().getVersions();
 			return versions;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (XmlPullParserException e) {
+			throw new RuntimeException(e);
 		}
-		LOG.debug("Versions not found for " + uidWithoutVersion + ".");
-		return List.of();
 	}
 }
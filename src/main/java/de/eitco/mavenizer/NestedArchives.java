@@ -0,0 +1,483 @@
+package de.eitco.mavenizer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds jars inside WAR, EAR, ZIP and TAR.GZ archives without extracting the archives to disk.
+ * <br>
+ * Jars inside zip based archives are read from the memory-mapped archive when they are opened. Stored (uncompressed) jars,
+ * which is how most wars and ears store their libraries, are not copied at all. Wars and zips inside ears or tarballs are scanned as well.
+ * <br>
+ * Tarballs can only be read sequentially, so jars inside them are buffered when the tarball is scanned: Small jars are kept in memory
+ * up to a fixed total shared by all scanned archives, all other jars are spilled to temporary files which are deleted by {@link #close()}.
+ * Compressed archives nested in other archives stay open until closed, so they count against the same total.
+ */
+public class NestedArchives implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NestedArchives.class);
+
+	/**
+	 * Separates path of an archive from path of an entry inside that archive, same as in jar URLs.
+	 */
+	public static final String SEPARATOR = "!/";
+
+	private static final List<String> ZIP_EXTENSIONS = List.of(".war", ".ear", ".zip");
+	private static final List<String> TAR_EXTENSIONS = List.of(".tar.gz", ".tgz");
+
+	private static final int IN_MEMORY_MAX_JAR_SIZE = 16 * 1024 * 1024;
+	private static final long IN_MEMORY_MAX_TOTAL_SIZE = 128 * 1024 * 1024;
+
+	/**
+	 * Jar found inside an archive file.
+	 */
+	public static class NestedJar {
+		public final Path archive;
+		/** Path of jar inside archive, paths inside nested archives are separated by {@link NestedArchives#SEPARATOR}. */
+		public final String nestedPath;
+		public final String name;
+		public final long size;
+		private final ContentSupplier content;
+		// content that was written to a temporary file, kept so that the jar is spilled at most once no matter how often it is opened
+		// (in-memory content is read again on each open instead, so that it does not stay on the heap)
+		private Content spilled = null;
+
+		private NestedJar(Path archive, String nestedPath, long size, ContentSupplier content) {
+			this.archive = archive;
+			this.nestedPath = nestedPath;
+			this.name = nestedPath.substring(nestedPath.lastIndexOf('/') + 1);
+			this.size = size;
+			this.content = content;
+		}
+
+		public JarSource open() {
+			var current = content();
+			var source = current.open();
+			keepIfSpilled(current);
+			return source;
+		}
+
+		/**
+		 * Writes jar to the given file, for tools that need the jar as a separate file.
+		 */
+		public void extractTo(Path target) {
+			content().writeTo(target);
+		}
+
+		private synchronized Content content() {
+			return spilled != null ? spilled : content.get();
+		}
+
+		private synchronized void keepIfSpilled(Content current) {
+			if (spilled == null && current.isSpilled()) {
+				spilled = current;
+			}
+		}
+	}
+
+	@FunctionalInterface
+	private static interface ContentSupplier {
+		Content get();
+	}
+
+	/**
+	 * Content of a nested file, either as buffer or as temporary file. Buffers that cannot be opened (Zip64) are written to a temporary file
+	 * on first open, which replaces the buffer.
+	 */
+	private class Content {
+		private ByteBuffer buffer;
+		private Path file;
+
+		Content(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.file = null;
+		}
+
+		Content(Path file) {
+			this.buffer = null;
+			this.file = file;
+		}
+
+		synchronized boolean isSpilled() {
+			return file != null;
+		}
+
+		synchronized JarSource open() {
+			if (file != null) {
+				return openSpilled(file);
+			}
+			var source = JarSource.open(buffer.duplicate());
+			if (source.isPresent()) {
+				return source.get();
+			}
+			// Zip64 can only be read from a file
+			var spilled = createSpillFile();
+			writeBuffer(spilled, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			file = spilled;
+			buffer = null;
+			return openSpilled(spilled);
+		}
+
+		synchronized void writeTo(Path target) {
+			try {
+				if (file != null) {
+					Files.copy(file, target);
+				} else {
+					writeBuffer(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void writeBuffer(Path target, OpenOption... options) {
+			try (var channel = FileChannel.open(target, options)) {
+				var remaining = buffer.duplicate();
+				while (remaining.hasRemaining()) {
+					channel.write(remaining);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private final List<JarSource> openArchives = new ArrayList<>();
+	private final Map<Path, List<NestedJar>> scanned = new HashMap<>();
+	private final Object spillLock = new Object();
+	private Path spillDir = null;
+	private long inMemoryTotal = 0;// heap bytes of buffered content that stays reachable until close
+
+	public static boolean isArchive(Path path) {
+		return isZipArchive(path.getFileName().toString()) || isTarArchive(path.getFileName().toString());
+	}
+
+	private static boolean isZipArchive(String name) {
+		var lower = name.toLowerCase();
+		return ZIP_EXTENSIONS.stream().anyMatch(lower::endsWith);
+	}
+
+	private static boolean isTarArchive(String name) {
+		var lower = name.toLowerCase();
+		return TAR_EXTENSIONS.stream().anyMatch(lower::endsWith);
+	}
+
+	private static boolean isJar(String name) {
+		return name.toLowerCase().endsWith(".jar");
+	}
+
+	/**
+	 * @return All jars inside the given archive and inside archives nested in it, in archive order.
+	 */
+	public synchronized List<NestedJar> scan(Path archive) {
+		return scanned.computeIfAbsent(archive.toAbsolutePath().normalize(), key -> {
+			LOG.debug("Scanning archive: '" + archive + "'");
+			var result = new ArrayList<NestedJar>();
+			if (isTarArchive(archive.getFileName().toString())) {
+				scanTar(archive, result);
+			} else {
+				var source = JarSource.open(archive);
+				openArchives.add(source);
+				scanZip(archive, source, "", result);
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * @return Jar inside given archive with given path, if it exists.
+	 */
+	public Optional<NestedJar> find(Path archive, String nestedPath) {
+		return scan(archive).stream()
+				.filter(jar -> jar.nestedPath.equals(nestedPath))
+				.findFirst();
+	}
+
+	private void scanZip(Path archive, JarSource source, String prefix, List<NestedJar> result) {
+		for (var entry : source.entries()) {
+			if (entry.isDirectory()) {
+				continue;
+			}
+			var name = entry.getName();
+			if (isJar(name)) {
+				result.add(new NestedJar(archive, prefix + name, entry.getSize(), () -> read(source, entry, false)));
+			} else if (isZipArchive(name)) {
+				var nestedSource = read(source, entry, true).open();
+				openArchives.add(nestedSource);
+				scanZip(archive, nestedSource, prefix + name + SEPARATOR, result);
+			}
+		}
+	}
+
+	/**
+	 * @param retained True if the content stays reachable until {@link #close()}, false if it is read again each time it is opened.
+	 */
+	private Content read(JarSource source, ZipEntry entry, boolean retained) {
+		boolean zeroCopy = entry.getMethod() == ZipEntry.STORED && source instanceof JarSource.MappedJarSource;
+		// mapped content is not on the heap, so only copies count against the total
+		boolean onHeap = !zeroCopy && (retained ? reserveInMemory(entry.getSize()) : entry.getSize() <= IN_MEMORY_MAX_JAR_SIZE);
+		if (zeroCopy || onHeap) {
+			return new Content(source.readEntry(entry));
+		}
+		var spilled = createSpillFile();
+		try (var in = source.openEntry(entry)) {
+			Files.copy(in, spilled, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new Content(spilled);
+	}
+
+	private void scanTar(Path archive, List<NestedJar> result) {
+		try (var tar = new TarInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(archive)), 65536))) {
+			for (var entry = tar.nextEntry(); entry.isPresent(); entry = tar.nextEntry()) {
+				var name = entry.get().name;
+				var size = entry.get().size;
+				if (isJar(name) || isZipArchive(name)) {
+					Content content;
+					if (reserveInMemory(size)) {
+						content = new Content(ByteBuffer.wrap(tar.readNBytes((int) size)).asReadOnlyBuffer());
+					} else {
+						var spilled = createSpillFile();
+						Files.copy(tar, spilled, StandardCopyOption.REPLACE_EXISTING);
+						content = new Content(spilled);
+					}
+					if (isJar(name)) {
+						result.add(new NestedJar(archive, name, size, () -> content));
+					} else {
+						var nestedSource = content.open();
+						openArchives.add(nestedSource);
+						scanZip(archive, nestedSource, name + SEPARATOR, result);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return True if content of given size may be kept on the heap, in which case it is added to the total of all archives.
+	 */
+	private synchronized boolean reserveInMemory(long size) {
+		if (size > IN_MEMORY_MAX_JAR_SIZE || inMemoryTotal + size > IN_MEMORY_MAX_TOTAL_SIZE) {
+			return false;
+		}
+		inMemoryTotal += size;
+		return true;
+	}
+
+	/**
+	 * Mapped files cannot be deleted on Windows until their mapping is garbage collected, so spill files are not mapped there.
+	 */
+	private static JarSource openSpilled(Path spilled) {
+		return Util.isWindows() ? JarSource.openUnmapped(spilled) : JarSource.open(spilled);
+	}
+
+	private Path createSpillFile() {
+		synchronized (spillLock) {
+			try {
+				if (spillDir == null) {
+					spillDir = Files.createTempDirectory("eitco-mavenizer-nested-");
+				}
+				return Files.createTempFile(spillDir, "nested-", ".jar");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Closes all scanned archives and deletes temporary files. Nested jars cannot be opened anymore afterwards.
+	 */
+	@Override
+	public synchronized void close() {
+		for (var source : openArchives) {
+			source.close();
+		}
+		openArchives.clear();
+		scanned.clear();
+		inMemoryTotal = 0;
+		synchronized (spillLock) {
+			if (spillDir != null) {
+				try (Stream<Path> files = Files.walk(spillDir)) {
+					files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+				} catch (IOException e) {
+					LOG.warn("Failed to delete temporary files in '" + spillDir + "'.", e);
+				}
+				spillDir = null;
+			}
+		}
+	}
+
+	/**
+	 * Minimal reader for (ustar, GNU and pax) tar streams, supports only what is needed to find regular files and their paths.
+	 */
+	private static class TarInputStream extends InputStream {
+
+		private static final int BLOCK_SIZE = 512;
+
+		static class TarEntry {
+			final String name;
+			final long size;
+
+			TarEntry(String name, long size) {
+				this.name = name;
+				this.size = size;
+			}
+		}
+
+		private final InputStream in;
+		private long remaining = 0;// bytes left in current entry
+		private long padding = 0;// bytes after current entry until next header
+
+		TarInputStream(InputStream in) {
+			this.in = in;
+		}
+
+		/**
+		 * Skips rest of current entry and returns next regular file entry.
+		 */
+		Optional<TarEntry> nextEntry() throws IOException {
+			String longName = null;
+			while (true) {
+				skipFully(remaining + padding);
+				remaining = 0;
+				padding = 0;
+
+				var header = new byte[BLOCK_SIZE];
+				if (in.readNBytes(header, 0, BLOCK_SIZE) < BLOCK_SIZE || isZeroBlock(header)) {
+					return Optional.empty();
+				}
+				var name = readString(header, 0, 100);
+				long size = readNumber(header, 124, 12);
+				byte type = header[156];
+				if (readString(header, 257, 5).equals("ustar")) {
+					var prefix = readString(header, 345, 155);
+					if (!prefix.isEmpty()) {
+						name = prefix + "/" + name;
+					}
+				}
+				remaining = size;
+				padding = (BLOCK_SIZE - (size % BLOCK_SIZE)) % BLOCK_SIZE;
+
+				if (type == 'L') {
+					// GNU long name of next entry
+					longName = readString(readNBytes((int) size), 0, (int) size);
+				} else if (type == 'x') {
+					// pax extended header of next entry
+					var pax = new String(readNBytes((int) size), StandardCharsets.UTF_8);
+					for (var record : pax.split("\n")) {
+						var keyValue = record.substring(record.indexOf(' ') + 1);
+						if (keyValue.startsWith("path=")) {
+							longName = keyValue.substring("path=".length());
+						}
+					}
+				} else if (type == '0' || type == 0) {
+					if (longName != null) {
+						name = longName;
+					}
+					return Optional.of(new TarEntry(name, size));
+				} else {
+					longName = null;
+				}
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int result = in.read();
+			if (result >= 0) {
+				remaining--;
+			}
+			return result;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int count = in.read(bytes, offset, (int) Math.min(length, remaining));
+			if (count > 0) {
+				remaining -= count;
+			}
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		private void skipFully(long count) throws IOException {
+			while (count > 0) {
+				long skipped = in.skip(count);
+				if (skipped <= 0) {
+					if (in.read() < 0) {
+						throw new EOFException("Unexpected end of tar stream");
+					}
+					skipped = 1;
+				}
+				count -= skipped;
+			}
+		}
+
+		private static boolean isZeroBlock(byte[] block) {
+			for (byte b : block) {
+				if (b != 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static String readString(byte[] bytes, int offset, int maxLength) {
+			int end = offset;
+			while (end < offset + maxLength && bytes[end] != 0) {
+				end++;
+			}
+			return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+		}
+
+		private static long readNumber(byte[] bytes, int offset, int length) {
+			if ((bytes[offset] & 0x80) != 0) {
+				// GNU base-256 encoding for big files
+				long result = bytes[offset] & 0x7f;
+				for (int i = offset + 1; i < offset + length; i++) {
+					result = (result << 8) | (bytes[i] & 0xff);
+				}
+				return result;
+			}
+			var octal = readString(bytes, offset, length).trim();
+			return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+		}
+	}
+}
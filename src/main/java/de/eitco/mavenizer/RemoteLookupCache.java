@@ -0,0 +1,343 @@
+package de.eitco.mavenizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.eitco.mavenizer.MavenRemoteService.OnlineJarResult;
+import de.eitco.mavenizer.analyze.Analyzer.JarHashes;
+
+/**
+ * On-disk cache of remote lookup results, so that jars and versions that were already looked up in a previous run do not cause
+ * network requests again.
+ * <br>
+ * Jar lookups are keyed by UID and URLs of all remote repositories, version lookups by UID without version and URL of a single repository.
+ * For found jars only fingerprints are cached (URL, size, checksums and all hashes computed so far), not the jar files themselves.
+ * Found and not-found results expire after separate durations. If cache has more than {@link #MAX_ENTRIES} entries when it is saved,
+ * oldest entries are dropped.
+ */
+public class RemoteLookupCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RemoteLookupCache.class);
+
+	public static final String FILENAME = "remote-lookup-cache.bin";
+
+	private static final int MAGIC = 0x454d524c;// "EMRL"
+	// must be incremented whenever the binary format changes, which invalidates all existing entries
+	private static final int FORMAT_VERSION = 1;
+
+	public static final int MAX_ENTRIES = 100_000;
+
+	private static final String JAR_PREFIX = "jar ";
+	private static final String VERSIONS_PREFIX = "versions ";
+
+	private static class Entry {
+		final long created;
+		final boolean found;
+		final byte[] data;// encoded value, null if value was added or decoded in this run
+		final Object value;// OnlineJarResult or list of versions, null if not decoded yet or not found
+
+		Entry(long created, boolean found, byte[] data, Object value) {
+			this.created = created;
+			this.found = found;
+			this.data = data;
+			this.value = value;
+		}
+	}
+
+	private final Path cacheFile;
+	private final long foundTtlMillis;
+	private final long notFoundTtlMillis;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicInteger hits = new AtomicInteger();
+
+	private RemoteLookupCache(Path cacheFile, Duration foundTtl, Duration notFoundTtl) {
+		this.cacheFile = cacheFile;
+		this.foundTtlMillis = foundTtl.toMillis();
+		this.notFoundTtlMillis = notFoundTtl.toMillis();
+	}
+
+	/**
+	 * Loads cache from given directory. If cache file does not exist, cannot be read or was written by an incompatible version, cache starts empty.
+	 * @param foundTtl How long results of jars or versions that were found are valid, zero to not cache them.
+	 * @param notFoundTtl How long results of jars or versions that were not found are valid, zero to not cache them.
+	 */
+	public static RemoteLookupCache open(Path cacheDir, Duration foundTtl, Duration notFoundTtl) {
+		var cache = new RemoteLookupCache(cacheDir.resolve(FILENAME), foundTtl, notFoundTtl);
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache.cacheFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				LOG.info("Ignoring remote lookup cache '" + cache.cacheFile + "' because it was written by an incompatible version.");
+				return cache;
+			}
+			var now = System.currentTimeMillis();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				var key = in.readUTF();
+				var created = in.readLong();
+				var found = in.readBoolean();
+				var data = new byte[in.readInt()];
+				in.readFully(data);
+				var entry = new Entry(created, found, data, null);
+				if (!cache.isExpired(entry, now)) {
+					cache.entries.put(key, entry);
+				}
+			}
+		} catch (NoSuchFileException e) {
+			LOG.debug("Remote lookup cache '" + cache.cacheFile + "' does not exist yet.");
+		} catch (IOException e) {
+			LOG.warn("Failed to read remote lookup cache '" + cache.cacheFile + "', cache will be rebuilt.", e);
+			cache.entries.clear();
+		}
+		return cache;
+	}
+
+	/**
+	 * Deletes cache file in given directory if it exists.
+	 */
+	public static void clear(Path cacheDir) {
+		try {
+			Files.deleteIfExists(cacheDir.resolve(FILENAME));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Number of lookups that were answered by this cache.
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @param download Downloads the jar, used to compute hashes later if they were not computed before the result was cached.
+	 * @return Empty if lookup was not cached or has expired, otherwise cached result, which is empty if jar was not found.
+	 */
+	public Optional<Optional<OnlineJarResult>> getJar(MavenUid uid, List<String> remoteRepos, Supplier<File> download) {
+		var key = jarKey(uid, remoteRepos);
+		var entry = get(key);
+		if (entry == null) {
+			return Optional.empty();
+		}
+		if (!entry.found) {
+			return Optional.of(Optional.empty());
+		}
+		if (entry.value != null) {
+			return Optional.of(Optional.of((OnlineJarResult) entry.value));
+		}
+		try {
+			var result = decodeJar(new DataInputStream(new ByteArrayInputStream(entry.data)), download);
+			// keep decoded result, so that hashes computed in this run are saved as well
+			entries.replace(key, entry, new Entry(entry.created, true, null, result));
+			return Optional.of(Optional.of(result));
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Ignoring corrupt remote lookup cache entry for " + uid + ".", e);
+			entries.remove(key, entry);
+			return Optional.empty();
+		}
+	}
+
+	public void putJar(MavenUid uid, List<String> remoteRepos, Optional<OnlineJarResult> result) {
+		put(jarKey(uid, remoteRepos), result.isPresent(), result.orElse(null));
+	}
+
+	public void removeJar(MavenUid uid, List<String> remoteRepos) {
+		entries.remove(jarKey(uid, remoteRepos));
+	}
+
+	/**
+	 * @return Empty if lookup was not cached or has expired, otherwise cached versions, which are empty if no versions were found.
+	 */
+	public Optional<List<String>> getVersions(MavenUid uidWithoutVersion, String remoteRepo) {
+		var key = versionsKey(uidWithoutVersion, remoteRepo);
+		var entry = get(key);
+		if (entry == null) {
+			return Optional.empty();
+		}
+		if (!entry.found) {
+			return Optional.of(List.of());
+		}
+		if (entry.value != null) {
+			@SuppressWarnings("unchecked")
+			var versions = (List<String>) entry.value;
+			return Optional.of(versions);
+		}
+		try {
+			var versions = decodeVersions(new DataInputStream(new ByteArrayInputStream(entry.data)));
+			return Optional.of(versions);
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Ignoring corrupt remote lookup cache entry for " + uidWithoutVersion + ".", e);
+			entries.remove(key, entry);
+			return Optional.empty();
+		}
+	}
+
+	public void putVersions(MavenUid uidWithoutVersion, String remoteRepo, List<String> versions) {
+		put(versionsKey(uidWithoutVersion, remoteRepo), !versions.isEmpty(), versions.isEmpty() ? null : List.copyOf(versions));
+	}
+
+	/**
+	 * Writes all entries that have not expired to cache file, at most {@link #MAX_ENTRIES} newest entries.
+	 * File is replaced atomically if file system supports it, so an interrupted run cannot leave a broken cache.
+	 */
+	public void save() {
+		var now = System.currentTimeMillis();
+		var snapshot = entries.entrySet().stream()
+				.filter(entry -> !isExpired(entry.getValue(), now))
+				.sorted(Comparator.comparingLong((Map.Entry<String, Entry> entry) -> entry.getValue().created).reversed())
+				.limit(MAX_ENTRIES)
+				.collect(Collectors.toList());
+		try {
+			Files.createDirectories(cacheFile.getParent());
+			var tempFile = Files.createTempFile(cacheFile.getParent(), FILENAME, ".tmp");
+			try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(snapshot.size());
+				for (var entry : snapshot) {
+					var value = entry.getValue();
+					var data = value.data != null ? value.data : encode(value.value);
+					out.writeUTF(entry.getKey());
+					out.writeLong(value.created);
+					out.writeBoolean(value.found);
+					out.writeInt(data.length);
+					out.write(data);
+				}
+			}
+			try {
+				Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Entry get(String key) {
+		var entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (isExpired(entry, System.currentTimeMillis())) {
+			entries.remove(key, entry);
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry;
+	}
+
+	private void put(String key, boolean found, Object value) {
+		if ((found ? foundTtlMillis : notFoundTtlMillis) > 0) {
+			entries.put(key, new Entry(System.currentTimeMillis(), found, null, value));
+		}
+	}
+
+	private boolean isExpired(Entry entry, long now) {
+		return now - entry.created >= (entry.found ? foundTtlMillis : notFoundTtlMillis);
+	}
+
+	private static String jarKey(MavenUid uid, List<String> remoteRepos) {
+		return JAR_PREFIX + uid.groupId + ":" + uid.artifactId + ":" + uid.version + " " + String.join(" ", remoteRepos);
+	}
+
+	private static String versionsKey(MavenUid uidWithoutVersion, String remoteRepo) {
+		return VERSIONS_PREFIX + uidWithoutVersion.groupId + ":" + uidWithoutVersion.artifactId + " " + remoteRepo;
+	}
+
+	private static byte[] encode(Object value) throws IOException {
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new DataOutputStream(bytes)) {
+			if (value instanceof OnlineJarResult) {
+				encodeJar(out, (OnlineJarResult) value);
+			} else if (value != null) {
+				@SuppressWarnings("unchecked")
+				var versions = (List<String>) value;
+				encodeVersions(out, versions);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void encodeJar(DataOutput out, OnlineJarResult jar) throws IOException {
+		out.writeUTF(jar.url);
+		out.writeLong(jar.size);
+		jar.checksums.writeTo(out);
+		var hashes = jar.getHashesIfComputed();
+		out.writeInt(hashes.size());
+		for (var jarHashes : hashes.values()) {
+			out.writeUTF(jarHashes.fingerprintVersion.name());
+			out.writeUTF(jarHashes.jarSha256);
+			var classHashes = jarHashes.getClassHashesIfComputed();
+			out.writeBoolean(classHashes.isPresent());
+			if (classHashes.isPresent()) {
+				classHashes.get().writeTo(out);
+			}
+		}
+	}
+
+	private static OnlineJarResult decodeJar(DataInput in, Supplier<File> download) throws IOException {
+		var url = in.readUTF();
+		var size = in.readLong();
+		var checksums = JarChecksums.readFrom(in);
+		var result = new OnlineJarResult(url, size, download, checksums);
+		int hashCount = in.readInt();
+		var hashes = new EnumMap<FingerprintVersion, JarHashes>(FingerprintVersion.class);
+		for (int i = 0; i < hashCount; i++) {
+			var version = FingerprintVersion.valueOf(in.readUTF());
+			var jarSha256 = in.readUTF();
+			var jarHashes = in.readBoolean()
+					? new JarHashes(jarSha256, version, ClassHashes.readFrom(in), checksums)
+					: new JarHashes(jarSha256, version, () -> Util.classHashes(() -> JarSource.open(result.getDownloaded().toPath())), checksums);
+			hashes.put(version, jarHashes);
+		}
+		result.putHashes(hashes);
+		return result;
+	}
+
+	private static void encodeVersions(DataOutput out, List<String> versions) throws IOException {
+		out.writeInt(versions.size());
+		for (var version : versions) {
+			out.writeUTF(version);
+		}
+	}
+
+	private static List<String> decodeVersions(DataInput in) throws IOException {
+		int count = in.readInt();
+		var versions = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			versions.add(in.readUTF());
+		}
+		return List.copyOf(versions);
+	}
+}
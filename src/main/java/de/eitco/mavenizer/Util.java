@@ -6,23 +6,30 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
@@ -162,56 +169,213 @@ public class Util {
 		return result;
 	}
 	
-	public static JarHashes sha256(ZipInputStream zipIn) {
-		try {
-			var classesResult = new HashMap<Path, byte[]>();
-			var emptyDigest = MessageDigest.getInstance("SHA-256");
-			var jarDigest = (MessageDigest) emptyDigest.clone();
+	/**
+	 * Incrementally computes {@link JarHashes} from the uncompressed content of jar entries, which must be passed in jar order.
+	 * Allows callers to hash a jar while reading it for other purposes, so that each entry only needs to be inflated once.
+	 * <br>
+	 * With {@link FingerprintVersion#V1}, entries are hashed immediately. With {@link FingerprintVersion#V2}, entries passed without content
+	 * are only hashed by {@link #finish()}, which allows entries of big jars to be hashed by multiple threads.
+	 */
+	public static class JarDigester {
+		
+		private static final long PARALLEL_MIN_SIZE = 4 * 1024 * 1024;// smaller jars are hashed faster by the calling thread alone
+		
+		private final FingerprintVersion version;
+		private final Supplier<JarSource> reopen;
+		private final Executor helpers;
+		private final int maxHelpers;
+		private final MessageDigest jarDigest;// only V1, borrowed from engine of the thread that created the digester
+		private final ClassHashes.Builder classesResult = new ClassHashes.Builder();// V1 only if jar cannot be reopened
+		private final JarChecksums.Builder checksums = new JarChecksums.Builder();
+		
+		// only V2: file entries and their digests, digest is null until entry is hashed by finish()
+		private final List<ZipEntry> entries = new ArrayList<>();
+		private final List<byte[]> entryDigests = new ArrayList<>();
+		private JarSource source = null;
+		
+		public JarDigester(FingerprintVersion version) {
+			this(version, null, null, 0);
+		}
+		
+		/**
+		 * @param reopen Only used for {@link FingerprintVersion#V1}: If not null, class hashes are not computed together with jar hash,
+		 *   but only when they are needed, by reading the jar opened with reopen again. If null, class hashes are computed right away.
+		 *   With {@link FingerprintVersion#V2}, class hashes are a by-product of jar hash.
+		 * @param helpers Only used for {@link FingerprintVersion#V2}: Executor on which up to maxHelpers tasks are started to help hashing
+		 *   entries of big jars. The calling thread hashes entries as well and never waits for helper tasks that did not start yet,
+		 *   so helpers can be the same busy executor the caller itself is running on.
+		 */
+		public JarDigester(FingerprintVersion version, Supplier<JarSource> reopen, Executor helpers, int maxHelpers) {
+			this.version = version;
+			this.reopen = reopen;
+			this.helpers = helpers;
+			this.maxHelpers = maxHelpers;
+			this.jarDigest = version == FingerprintVersion.V1 ? HashingEngine.current().borrowDigest() : null;
+		}
+		
+		public void update(JarSource source, ZipEntry entry) {
+			checksums.add(entry);
+			if (version == FingerprintVersion.V2) {
+				if (!entry.isDirectory()) {
+					this.source = source;
+					entries.add(entry);
+					entryDigests.add(null);
+				}
+			} else if (reopen == null && isClass(entry)) {
+				var engine = HashingEngine.current();
+				var classDigest = engine.borrowDigest();
+				source.digest(entry, jarDigest, classDigest);
+				classesResult.add(entry.getName(), classDigest.digest());
+				engine.returnDigest(classDigest);
+			} else {
+				source.digest(entry, jarDigest);
+			}
+		}
+		
+		public void update(ZipEntry entry, byte[] entryContent) {
+			checksums.add(entry);
+			if (version == FingerprintVersion.V2) {
+				if (!entry.isDirectory()) {
+					entries.add(entry);
+					entryDigests.add(HashingEngine.current().digest(entryContent));
+				}
+				return;
+			}
+			jarDigest.update(entryContent);
+			if (reopen == null && isClass(entry)) {
+				classesResult.add(entry.getName(), HashingEngine.current().digest(entryContent));
+			}
+		}
+		
+		public JarHashes finish() {
+			byte[] jarHash;
+			if (version == FingerprintVersion.V2) {
+				jarHash = combineEntryDigests(digestPendingEntries());
+			} else {
+				jarHash = jarDigest.digest();
+				HashingEngine.current().returnDigest(jarDigest);
+			}
+			var jarHashString = new String(Base64.getEncoder().encode(jarHash));
+			if (version == FingerprintVersion.V1 && reopen != null) {
+				var reopen = this.reopen;
+				return new JarHashes(jarHashString, version, () -> classHashes(reopen), checksums.build());
+			}
+		    return new JarHashes(jarHashString, version, classesResult.build(), checksums.build());
+		}
+		
+		private byte[][] digestPendingEntries() {
+			var digests = entryDigests.toArray(new byte[0][]);
+			var pending = new ArrayList<Integer>();
+			long pendingSize = 0;
+			for (int i = 0; i < digests.length; i++) {
+				if (digests[i] == null) {
+					pending.add(i);
+					pendingSize += Math.max(0, entries.get(i).getSize());
+				}
+			}
+			if (pending.isEmpty()) {
+				return digests;
+			}
 			
-			ZipEntry entry;
-			while ((entry = zipIn.getNextEntry()) != null) {
-				String nameLower = entry.getName().toLowerCase();
-				if (nameLower.endsWith(".class")) {
-					var classDigest = (MessageDigest) emptyDigest.clone();
-					updateDigests(zipIn, jarDigest, classDigest);
-					classesResult.put(Paths.get(entry.getName()), classDigest.digest());
-				} else {
-					updateDigests(zipIn, jarDigest);
+			// each task takes the next entry that is not taken yet until all entries are taken
+			var next = new AtomicInteger(0);
+			var remaining = new CountDownLatch(pending.size());
+			var failure = new AtomicReference<RuntimeException>();
+			Runnable task = () -> {
+				// helpers use engine of their own thread
+				var engine = HashingEngine.current();
+				int index;
+				while ((index = next.getAndIncrement()) < pending.size()) {
+					int entryIndex = pending.get(index);
+					try {
+						digests[entryIndex] = engine.digest(source, entries.get(entryIndex));
+					} catch (RuntimeException e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						remaining.countDown();
+					}
 				}
+			};
+			if (helpers != null && pendingSize >= PARALLEL_MIN_SIZE) {
+				int helperCount = Math.min(maxHelpers, pending.size() - 1);
+				for (int i = 0; i < helperCount; i++) {
+					helpers.execute(task);
+				}
+			}
+			task.run();
+			// all entries are taken at this point, we only wait for entries that helpers are still hashing
+			run(() -> remaining.await());
+			if (failure.get() != null) {
+				throw failure.get();
 			}
+			return digests;
+		}
+		
+		private byte[] combineEntryDigests(byte[][] digests) {
+			var sorted = IntStream.range(0, digests.length).boxed()
+					.sorted(Comparator.<Integer, String>comparing(index -> entries.get(index).getName())
+							.thenComparing(index -> digests[index], Arrays::compareUnsigned))
+					.collect(Collectors.toList());
 			
-			byte[] jarHash = jarDigest.digest();
-			var jarHashString = new String(Base64.getEncoder().encode(jarHash));
-		    return new JarHashes(jarHashString, classesResult);
-		    
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
-		} catch (CloneNotSupportedException e) {
-			throw new RuntimeException(e);
+			var engine = HashingEngine.current();
+			var combined = engine.borrowDigest();
+			var nameLength = ByteBuffer.allocate(4);
+			for (int index : sorted) {
+				var entry = entries.get(index);
+				var name = entry.getName().getBytes(StandardCharsets.UTF_8);
+				combined.update(nameLength.putInt(0, name.length).array());
+				combined.update(name);
+				combined.update(digests[index]);
+				if (isClass(entry)) {
+					classesResult.add(entry.getName(), digests[index]);
+				}
+			}
+			var result = combined.digest();
+			engine.returnDigest(combined);
+			return result;
 		}
 	}
 	
-	private static void updateDigests(InputStream in, MessageDigest... digests) {
-		try {
-	    	byte[] buffer= new byte[8192 * 4];
-		    int count;
-		    while ((count = in.read(buffer)) > 0) {
-		    	for (var digest : digests) {
-		    		digest.update(buffer, 0, count);
-		    	}
-		    }
-	    } catch (IOException e) {
-			throw new UncheckedIOException(e);
+	private static boolean isClass(ZipEntry entry) {
+		var name = entry.getName();
+		return name.regionMatches(true, name.length() - ".class".length(), ".class", 0, ".class".length());
+	}
+	
+	public static JarHashes sha256(JarSource source, FingerprintVersion version) {
+		var digester = new JarDigester(version);
+		for (var entry : source.entries()) {
+			digester.update(source, entry);
 		}
+		return digester.finish();
 	}
 	
-	public static JarHashes sha256(File compressedFile) {
-	    try (ZipInputStream zipIn = new ZipInputStream(new FileInputStream(compressedFile))) {
-	    	return sha256(zipIn);
-	    } catch (IOException e) {
-			throw new UncheckedIOException(e);
+	/**
+	 * Class hashes of the returned hashes are only computed when they are needed, by reading the file again.
+	 */
+	public static JarHashes sha256(File compressedFile, FingerprintVersion version) {
+		Supplier<JarSource> reopen = () -> JarSource.open(compressedFile.toPath());
+		try (var source = reopen.get()) {
+			var digester = new JarDigester(version, reopen, null, 0);
+			for (var entry : source.entries()) {
+				digester.update(source, entry);
+			}
+			return digester.finish();
+		}
+	}
+	
+	/**
+	 * Computes class hashes only, for jars whose class hashes were not computed together with their jar hash.
+	 */
+	public static ClassHashes classHashes(Supplier<JarSource> reopen) {
+		try (var source = reopen.get()) {
+			var builder = new ClassHashes.Builder();
+			var engine = HashingEngine.current();
+			for (var entry : source.entries()) {
+				if (isClass(entry)) {
+					builder.add(entry.getName(), engine.digest(source, entry));
+				}
+			}
+			return builder.build();
 		}
 	}
 }
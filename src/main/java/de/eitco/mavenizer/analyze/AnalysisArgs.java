@@ -1,14 +1,20 @@
 package de.eitco.mavenizer.analyze;
 
 import java.io.File;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.PatternSyntaxException;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 
+import de.eitco.mavenizer.FingerprintVersion;
+import de.eitco.mavenizer.NestedArchives;
 import de.eitco.mavenizer.Util;
 
 @Parameters(commandDescription = "Analyze jars interactively to generate report with maven uid for each jar.")
@@ -16,7 +22,7 @@ public class AnalysisArgs {
 	
 	public static final String DATETIME_SUBSTITUTE = "<datetime>";
 	
-	@Parameter(order = 10, description = "<path(s) to jar file(s) or parent folder(s)>", required = true)
+	@Parameter(order = 10, description = "<path(s) to jar file(s), archive file(s) (war, ear, zip, tar.gz) or parent folder(s)>", required = true)
 	public List<String> jars = null;
 	
 	@Parameter(order = 20, names = { "-interactive", "-i" }, description = 
@@ -44,6 +50,66 @@ public class AnalysisArgs {
 	
 	@Parameter(order = 80, names = "-start", description = "If set to a positive number, jars are skipped until jar with given number is reached.")
 	public int start = 1;
+	
+	@Parameter(order = 90, names = "-threads", description = "Number of worker threads used for offline analysis (reading and hashing jars).")
+	public int threads = Runtime.getRuntime().availableProcessors();
+	
+	@Parameter(order = 100, names = "-maxJarsInFlight", description = 
+			"If set to a positive number, enables streaming mode for very large numbers of jars: Only that many jars are analyzed ahead of the jar"
+			+ " currently being reported, and analysis data of each jar is released as soon as its report entry is final. Jars are analyzed in original order.")
+	public int maxJarsInFlight = -1;
+	
+	@Parameter(order = 110, names = "-cacheDir", description = 
+			"Directory of the fingerprint cache. Hashes and offline analysis results of jars are cached there and reused for jars whose"
+			+ " canonical path, file size and last modification time did not change since the last run."
+			+ " Results of online lookups (fingerprints of jars found online, versions, and jars or versions not found) are cached there as well.")
+	public String cacheDir = "./eitco-mavenizer-cache";
+	
+	@Parameter(order = 120, names = "-noCache", description = "Disable reading and writing of the fingerprint cache and the remote lookup cache.")
+	public boolean noCache = false;
+	
+	@Parameter(order = 130, names = "-clearCache", description = 
+			"Delete fingerprint cache and remote lookup cache before analysis, so that all jars are read and looked up online again.")
+	public boolean clearCache = false;
+	
+	@Parameter(order = 140, names = "-maxDepth", description = 
+			"Maximum folder depth to search for jars in given folders. If set to 1, only jars directly inside given folders are analyzed.")
+	public int maxDepth = 1;
+	
+	@Parameter(order = 150, names = "-include", description = 
+			"Glob pattern (see java.nio.file.FileSystem.getPathMatcher) that jar paths relative to the given folder must match, for example '**/lib/*.jar'."
+			+ " Only applies to jars found in given folders.")
+	public String include = null;
+	
+	@Parameter(order = 160, names = "-exclude", description = 
+			"Glob pattern for jar or folder paths relative to the given folder that should be skipped, for example '**/test'. Skipped folders are not searched.")
+	public String exclude = null;
+	
+	@Parameter(order = 170, names = "-fingerprint", description = 
+			"Algorithm of jar hash. 'V1' hashes content of all entries in jar order, which is compatible with reports of older versions."
+			+ " 'V2' combines hashes of all entries sorted by entry name, so that jars with reordered entries get the same hash"
+			+ " and entries of big jars can be hashed by multiple threads.")
+	public FingerprintVersion fingerprint = FingerprintVersion.V1;
+	
+	@Parameter(order = 180, names = "-certaintyThreshold", description = 
+			"If set to a positive number, expensive offline analyzers (for example class folder and class timestamp analysis) are skipped for a jar"
+			+ " once the best groupId, artifactId and version candidates found by cheaper analyzers each have at least this score."
+			+ " A pom.xml and pom.properties with matching values already give a score of 10.")
+	public int certaintyThreshold = 0;
+	
+	@Parameter(order = 190, names = "-maxParallelChecks", description = 
+			"Maximum number of candidate UIDs of a single jar that are downloaded and compared with the jar at the same time."
+			+ " Checks of a jar stop as soon as an identical jar is found online.")
+	public int maxParallelChecks = 4;
+	
+	@Parameter(order = 200, names = "-foundCacheDays", description = 
+			"Number of days that jars and versions found online are kept in the remote lookup cache. 0 disables caching of found results.")
+	public int foundCacheDays = 30;
+	
+	@Parameter(order = 210, names = "-notFoundCacheHours", description = 
+			"Number of hours that jars and versions not found online are kept in the remote lookup cache, since they might be deployed later."
+			+ " 0 disables caching of results not found.")
+	public int notFoundCacheHours = 24;
 
 
 	public Optional<String> validateJars() {
@@ -53,8 +119,8 @@ public class AnalysisArgs {
 			if (!file.exists()) {
 				return Optional.of("Jar file/folder path '" + path + "' does not exist!");
 			} else {
-				if (file.isFile() && !path.getFileName().toString().toLowerCase().endsWith(".jar")) {
-					return Optional.of("Wrong file extension for file  '" + path + "'! Expected .jar extension.");
+				if (file.isFile() && !path.getFileName().toString().toLowerCase().endsWith(".jar") && !NestedArchives.isArchive(path)) {
+					return Optional.of("Wrong file extension for file  '" + path + "'! Expected .jar, .war, .ear, .zip, .tar.gz or .tgz extension.");
 				}
 			}
 		}
@@ -76,4 +142,88 @@ public class AnalysisArgs {
 		}
 		return Optional.empty();
 	}
+	
+	public Optional<String> validateCacheDir() {
+		if (!noCache) {
+			var file = Paths.get(cacheDir).toFile();
+			if (file.exists() && !file.isDirectory()) {
+				return Optional.of("Cache directory '" + cacheDir + "' is not a directory!");
+			}
+		}
+		return Optional.empty();
+	}
+	
+	public Optional<String> validateFolderSearch() {
+		if (maxDepth <= 0) {
+			return Optional.of("MaxDepth parameter must be at least '1'.");
+		}
+		for (var glob : new String[] { include, exclude }) {
+			if (glob != null) {
+				try {
+					toMatcher(glob);
+				} catch (PatternSyntaxException e) {
+					return Optional.of("Invalid glob pattern '" + glob + "': " + e.getDescription());
+				}
+			}
+		}
+		return Optional.empty();
+	}
+	
+	/**
+	 * @return Filter for jar paths relative to given folder.
+	 */
+	public Predicate<Path> getJarFilter() {
+		Predicate<Path> filter = path -> path.getFileName().toString().toLowerCase().endsWith(".jar");
+		if (include != null) {
+			filter = filter.and(toMatcher(include)::matches);
+		}
+		if (exclude != null) {
+			PathMatcher matcher = toMatcher(exclude);
+			filter = filter.and(path -> !matcher.matches(path));
+		}
+		return filter;
+	}
+	
+	/**
+	 * @return Filter for sub-folder paths relative to given folder.
+	 */
+	public Predicate<Path> getFolderFilter() {
+		if (exclude != null) {
+			PathMatcher matcher = toMatcher(exclude);
+			return path -> !matcher.matches(path);
+		}
+		return path -> true;
+	}
+	
+	private PathMatcher toMatcher(String glob) {
+		return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+	}
+	
+	public Optional<String> validateThreads() {
+		if (threads <= 0) {
+			return Optional.of("Threads parameter must be at least '1'.");
+		}
+		return Optional.empty();
+	}
+	
+	public Optional<String> validateCertaintyThreshold() {
+		if (certaintyThreshold < 0) {
+			return Optional.of("CertaintyThreshold parameter must not be negative.");
+		}
+		return Optional.empty();
+	}
+	
+	public Optional<String> validateMaxParallelChecks() {
+		if (maxParallelChecks <= 0) {
+			return Optional.of("MaxParallelChecks parameter must be at least '1'.");
+		}
+		return Optional.empty();
+	}
+	
+	public Optional<String> validateLookupCacheDurations() {
+		if (foundCacheDays < 0 || notFoundCacheHours < 0) {
+			return Optional.of("FoundCacheDays and NotFoundCacheHours parameters must not be negative.");
+		}
+		return Optional.empty();
+	}
 }
\ No newline at end of file
@@ -1,12 +1,10 @@
 package de.eitco.mavenizer.analyze;
 
-import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -16,13 +14,15 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.regex.Matcher;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,15 +32,23 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import de.eitco.mavenizer.AnalysisReport;
 import de.eitco.mavenizer.AnalysisReport.AnalysisInfo;
 import de.eitco.mavenizer.AnalysisReport.JarReport;
+import de.eitco.mavenizer.ClassHashes;
 import de.eitco.mavenizer.Cli;
+import de.eitco.mavenizer.FileWalker;
+import de.eitco.mavenizer.FingerprintVersion;
+import de.eitco.mavenizer.HashingEngine;
+import de.eitco.mavenizer.JarChecksums;
 import de.eitco.mavenizer.MavenUid;
 import de.eitco.mavenizer.MavenUid.MavenUidComponent;
+import de.eitco.mavenizer.NestedArchives;
+import de.eitco.mavenizer.RemoteLookupCache;
 import de.eitco.mavenizer.StringUtil;
 import de.eitco.mavenizer.Util;
 import de.eitco.mavenizer.analyze.JarAnalyzer.ManifestFile;
 import de.eitco.mavenizer.analyze.OnlineAnalyzer.OnlineMatch;
 import de.eitco.mavenizer.analyze.OnlineAnalyzer.UidCheck;
 import de.eitco.mavenizer.analyze.jar.Helper.Regex;
+import de.eitco.mavenizer.analyze.jar.Helper.Scan;
 
 public class Analyzer {
 
@@ -53,22 +61,73 @@ public class Analyzer {
 	public static class Jar {
 		public final String name;
 		public final String dir;
+		public final Optional<String> nestedIn;// archive and path inside archive, if jar is not a file
 		public final JarHashes hashes;
 		
-		public Jar(String name, String dir, JarHashes hashes) {
+		public Jar(String name, String dir, Optional<String> nestedIn, JarHashes hashes) {
 			this.name = name;
 			this.dir = dir;
+			this.nestedIn = nestedIn;
 			this.hashes = hashes;
 		}
 	}
 	
 	public static class JarHashes {
 		public final String jarSha256;
-		public final Map<Path, byte[]> classesToSha256;// since we do not print class hashes, we can keep them as byte array
+		public final FingerprintVersion fingerprintVersion;// algorithm used for jarSha256
+		public final JarChecksums checksums;
+		private ClassHashes classHashes;
+		private Supplier<ClassHashes> classHashesLoader;
+		private Consumer<ClassHashes> classHashesListener;
 		
-		public JarHashes(String jarSha256, Map<Path, byte[]> classesToSha256) {
+		public JarHashes(String jarSha256, FingerprintVersion fingerprintVersion, ClassHashes classHashes, JarChecksums checksums) {
 			this.jarSha256 = jarSha256;
-			this.classesToSha256 = classesToSha256;
+			this.fingerprintVersion = fingerprintVersion;
+			this.classHashes = classHashes;
+			this.checksums = checksums;
+		}
+		
+		/**
+		 * @param classHashesLoader Computes class hashes on first call to {@link #getClassHashes()}, usually by reading the jar again.
+		 */
+		public JarHashes(String jarSha256, FingerprintVersion fingerprintVersion, Supplier<ClassHashes> classHashesLoader, JarChecksums checksums) {
+			this.jarSha256 = jarSha256;
+			this.fingerprintVersion = fingerprintVersion;
+			this.classHashesLoader = classHashesLoader;
+			this.checksums = checksums;
+		}
+		
+		/**
+		 * Class hashes are only needed if jar hash of an online jar does not match, so they might not have been computed together with jar hash.
+		 */
+		public synchronized ClassHashes getClassHashes() {
+			if (classHashes == null) {
+				classHashes = classHashesLoader.get();
+				classHashesLoader = null;
+				if (classHashesListener != null) {
+					classHashesListener.accept(classHashes);
+					classHashesListener = null;
+				}
+			}
+			return classHashes;
+		}
+		
+		/**
+		 * @param listener Called once class hashes have been computed by the loader, or immediately if they are already known.
+		 */
+		public synchronized void onClassHashesComputed(Consumer<ClassHashes> listener) {
+			if (classHashes != null) {
+				listener.accept(classHashes);
+			} else {
+				classHashesListener = listener;
+			}
+		}
+		
+		/**
+		 * @return Class hashes if they have already been computed.
+		 */
+		public synchronized Optional<ClassHashes> getClassHashesIfComputed() {
+			return Optional.ofNullable(classHashes);
 		}
 	}
 	
@@ -98,6 +157,24 @@ public class Analyzer {
 		}
 	}
 	
+	/**
+	 * Result of the first jar with a given content, which is reused for all other jars with identical content.
+	 * Only keeps the first jar's location, not the jar itself, so its hashes can be collected once it is done.
+	 */
+	private static class ContentResolution {
+		final String firstName;
+		final String firstDir;
+		final Optional<String> firstNestedIn;
+		final Optional<JarReport> report;
+		
+		ContentResolution(Jar firstJar, Optional<JarReport> report) {
+			this.firstName = firstJar.name;
+			this.firstDir = firstJar.dir;
+			this.firstNestedIn = firstJar.nestedIn;
+			this.report = report;
+		}
+	}
+	
 	public static class UserSelectionResult {
 		Optional<MavenUid> selected;
 		boolean wantsToExit;
@@ -112,14 +189,16 @@ public class Analyzer {
 	
 	private final AnalysisArgs args = new AnalysisArgs();
 	private final Cli cli;
-	private final JarAnalyzer jarAnalyzer;
 	private final ConsolePrinter printer;
 	
 	private OnlineAnalyzer online = null;
+	
+	// keyed by jar hash, so that each distinct jar content is only checked online and resolved once
+	private final Map<String, JarAnalysisWaitingForCompletion> onlineByContent = new ConcurrentHashMap<>();
+	private final Map<String, ContentResolution> resolvedByContent = new ConcurrentHashMap<>();
 
 	public Analyzer(Cli cli) {
 		this.cli = cli;
-		this.jarAnalyzer = new JarAnalyzer(cli);
 		this.printer = new ConsolePrinter(cli);
 	}
 
@@ -132,7 +211,13 @@ public class Analyzer {
 		var validators = List.of(
 				args.validateJars(),
 				args.validateReportFile(),
-				args.validateStartNumber()
+				args.validateStartNumber(),
+				args.validateThreads(),
+				args.validateCertaintyThreshold(),
+				args.validateMaxParallelChecks(),
+				args.validateLookupCacheDurations(),
+				args.validateCacheDir(),
+				args.validateFolderSearch()
 		);
 		if (!Util.validateArgs(cli, validators)) {
 			return;
@@ -144,8 +229,18 @@ public class Analyzer {
 			cli.println("Interactive mode enabled.", LOG::info);
 		}
 		
+		var lookupCache = Optional.<RemoteLookupCache>empty();
 		if (!args.offline) {
-			online = new OnlineAnalyzer(Optional.ofNullable(args.remoteRepos));
+			if (!args.noCache) {
+				var cacheDir = Paths.get(args.cacheDir);
+				if (args.clearCache) {
+					cli.println("Clearing remote lookup cache: " + cacheDir.toAbsolutePath(), LOG::info);
+					RemoteLookupCache.clear(cacheDir);
+				}
+				lookupCache = Optional.of(RemoteLookupCache.open(cacheDir,
+						Duration.ofDays(args.foundCacheDays), Duration.ofHours(args.notFoundCacheHours)));
+			}
+			online = new OnlineAnalyzer(Optional.ofNullable(args.remoteRepos), lookupCache, args.maxParallelChecks);
 		} else {
 			cli.println("ONLINE ANALYSIS DISABLED! - Analyzer will not be able to auto-select values for matching jars found online!", LOG::info);
 			cli.askUserToContinue("");
@@ -153,205 +248,291 @@ public class Analyzer {
 		
 		cli.println("Offline-Analysis started.", LOG::info);
 		
-		List<Path> jarPaths = Util.getFiles(args.jars, path -> path.getFileName().toString().toLowerCase().endsWith(".jar"));
-		var jarCount = jarPaths.size();
-		var jarIndex = 0;
-		List<JarAnalysisWaitingForCompletion> waiting = new ArrayList<>(jarCount);
+		var cache = Optional.<FingerprintCache>empty();
+		if (!args.noCache) {
+			var cacheDir = Paths.get(args.cacheDir);
+			if (args.clearCache) {
+				cli.println("Clearing fingerprint cache: " + cacheDir.toAbsolutePath(), LOG::info);
+				FingerprintCache.clear(cacheDir);
+			}
+			cache = Optional.of(FingerprintCache.open(cacheDir));
+		}
 		
-		// first we do offline analysis and start online analysis for all jars
-	    for (var jarPath : jarPaths) {
-	    	
-	    	if ((args.start - 1) > jarIndex) {
-	    		jarIndex++;
-	    		continue;
-	    	}
-	    	
-	    	if (args.limit >= 0 && jarIndex >= (args.start - 1 + args.limit)) {
-	    		break;
-	    	}
-	    	
-			LOG.debug("Analyzing Jar: '" + jarPath.toString() + "'");
-			cli.println(StringUtil.RETURN_LINE + "Offline-Analysis: Jar " + (jarIndex + 1) + "/" + jarCount);
-			
-			try (var fin = new FileInputStream(jarPath.toFile())) {
-				
-				// We need two input streams because JarInputStream cannot read or expose uncompressed bytes, but we need those to create hash.
-				// We hash uncompressed bytes so we know if the jar content is identical independent from jar compression level/method.
-				var compressedBytes = fin.readAllBytes();
-				InputStream compressedIn = new ByteArrayInputStream(compressedBytes);
-				ZipInputStream unzipIn = new ZipInputStream(new ByteArrayInputStream(compressedBytes));
-				
-				String jarName = jarPath.getFileName().toString();
-		    	JarHashes jarHashes = Util.sha256(unzipIn);
-		    	String absoluteDir = jarPath.toAbsolutePath().normalize().getParent().toString();
-		    	Jar jar = new Jar(jarName, absoluteDir, jarHashes);
-				
-				var jarAnalysisResult = jarAnalyzer.analyzeOffline(jar, compressedIn);
-				var sorted = jarAnalysisResult.sortedValueCandidates;
-				
-				if (!args.offline) {
-					var toCheck = online.selectCandidatesToCheck(sorted);
-					
-					int highestVersionScore = toCheck.entrySet().stream()
-							.filter(entry -> entry.getKey().version != null)
-							.mapToInt(entry -> entry.getValue().get(MavenUidComponent.VERSION))
-							.max().orElse(0);
-					
-					var toCheckWithVersion = toCheck.entrySet().stream()
-							.filter(entry -> entry.getKey().version != null)
-							.map(Map.Entry::getKey)
-							.collect(Collectors.toSet());
-					
-					var toCheckNoVersion = toCheck.entrySet().stream()
-							.filter(entry -> {
-								if (entry.getKey().version == null) {
-									return true;
-								} else {
-									int versionScore = entry.getValue().get(MavenUidComponent.VERSION);
-									// if score too low and no other good version candidates
-									return highestVersionScore <= VERSION_NO_SEARCH_THRESHOLD && versionScore <= VERSION_SEARCH_MAX_THRESHOLD;
-								}
-							})
-							.map(Map.Entry::getKey)
-							.map(uid -> new MavenUid(uid.groupId, uid.artifactId, null))// null out version
-							.collect(Collectors.toSet());
-					
-					var checkResultsWithVersion = online.findJars(jarHashes, toCheckWithVersion);
-					var checkResultsNoVersion = online.searchVersionsAndFindJars(jarHashes, toCheckNoVersion);
-					
-					waiting.add(new JarAnalysisWaitingForCompletion(jar, jarAnalysisResult, checkResultsWithVersion, checkResultsNoVersion));
+		var offlineAnalyzer = new OfflineAnalyzer(args.threads, args.fingerprint, args.certaintyThreshold, cache);
+		var streaming = args.maxJarsInFlight > 0;
+		
+		// if all found jars will be analyzed anyway, analysis can start while folders are still being searched
+		var startEarly = !streaming && args.start == 1 && args.limit < 0;
+		var walker = new FileWalker(args.maxDepth, args.getJarFilter(), args.getFolderFilter(), args.threads);
+		List<Path> files = walker.walk(args.jars, path -> {
+			if (startEarly && !NestedArchives.isArchive(path)) {
+				offlineAnalyzer.startEarly(JarInput.of(path));
+			}
+		});
+		
+		// jars inside archives are read directly from the archives
+		try (var archives = new NestedArchives()) {
+			var jarInputs = new ArrayList<JarInput>();
+			for (var file : files) {
+				if (NestedArchives.isArchive(file)) {
+					var nestedJars = archives.scan(file);
+					cli.println("Found " + nestedJars.size() + " jars inside archive: " + file, LOG::info);
+					for (var nestedJar : nestedJars) {
+						jarInputs.add(JarInput.of(nestedJar));
+					}
 				} else {
-					var checkResultsWithVersion = CompletableFuture.completedFuture(Set.<UidCheck>of());
-					var checkResultsNoVersion = CompletableFuture.completedFuture(Map.<MavenUid, Set<UidCheck>>of());
-					
-					waiting.add(new JarAnalysisWaitingForCompletion(jar, jarAnalysisResult, checkResultsWithVersion, checkResultsNoVersion));
+					jarInputs.add(JarInput.of(file));
 				}
-				
-				jarIndex++;
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
 			}
-	    }
-	    
-		cli.println();// end System.out.print with StringUtil.RETURN_LINE
-		
-	    var onlineCheckInitialized = false;
-	    cli.println("Online-Check initializing...");
-	    
-	    var count = 1;
-	    
-	    // TODO entirely remove use of futures here
-	    var jarReportFutures = new ArrayList<CompletableFuture<JarReport>>(waiting.size());
-	    
-	    // then wait for each jar to finish online analysis to complete analysis
-	    for (var jarAnalysis : waiting) {
-	    	var jar = jarAnalysis.jar;
-	    	
-	    	// MavenRepoChecker initialization might be finished asynchronously before this point in time,
-    		// but we can only start to print after offline analysis is finished to not destroy RETURN_LINE printlns.
-	    	if (!onlineCheckInitialized) {
-	    		onlineCheckInitialized = true;
-	    		
-		    	// join to make sure async stuff is done
-		    	jarAnalysis.onlineCompletionWithVersion.join();
-		    	jarAnalysis.onlineCompletionNoVersion.join();
-	    		
-	    		cli.println("Online-Check initialized!");
-	    		cli.println("Online-Check started.");
-	    		cli.println();
-	    	}
-	    	
-	    	var jarDirForReport = Paths.get(".").resolve(Util.CURRENT_DIR.toAbsolutePath().relativize(Paths.get(jar.dir))).toString();
-	    	
-	    	var autoSelected = autoSelectCandidate(jarAnalysis);
-	    	Optional<JarReport> selected = autoSelected.map(uid -> new JarReport(jar.name, jarDirForReport, jar.hashes.jarSha256, true, uid.fullUid));
-	    	
-	    	cli.println(jarAnalysis.jar.name + " (" + count + "/" + waiting.size() + ")");
-	    	printer.printResults(jarAnalysis, autoSelected, args.forceDetailedOutput, args.offline);
-	    	
-	    	if (selected.isEmpty()) {
-	    		if (args.interactive) {
-	    			var userResult = userSelectCandidate(cli, jarAnalysis);
-	    			if (userResult.wantsToExit) {
-	    				break;
-	    			}
-		    		var userSelectedUid = userResult.selected;
-		    		if (userSelectedUid.isPresent()) {
-		    			
-		    			// We check again to see if user has provided a UID of a jar that is available online and identical, using cache if possible.
-		    			if (!args.offline) {
-		    				var checkedSet = online.findJars(jar.hashes, Set.of(userSelectedUid.get()));
-		    				// We do not make use of asynchronous downloading here because we want to notify user:
-		    				// - if the UID he selected could be found online
-		    				// - if the UID he selected might conflict with a non-identical online jar
-		    				var uidCheck = checkedSet.join().iterator().next();
-		    				var foundIdentical = uidCheck.matchType.isConsideredIdentical();
-		    				var foundNonIdentical = uidCheck.matchType.equals(OnlineMatch.FOUND_NO_MATCH);
-		    				if (foundIdentical) {
-		    					cli.println();
-		    					cli.println("  CONFLICT-CHECK: Ok, found identical JAR online.");
-		    				} else if (foundNonIdentical) {
-		    					cli.println();
-		    					cli.println("  CONFLICT-CHECK: WARNING!!!");
-		    					cli.println("  Found non-identical JAR with same UID online!", LOG::warn);
-		    					cli.println("  Nevertheless the JAR's 'foundOnRemote' flag will be set to `true` to prevent it from being installed/deployed!", LOG::warn);
-		    					if (uidCheck.url.isPresent()) {
-			    					cli.println("  " + uidCheck.url.get(), LOG::warn);
-		    					}
-		    				} else {
-		    					cli.println();
-		    					cli.println("  CONFLICT-CHECK: Ok, found no conflicting JARs online.");
-		    				}
-		    				var foundOnRemote = foundIdentical || foundNonIdentical;
-	    					selected = Optional.of(new JarReport(jar.name, jarDirForReport, jar.hashes.jarSha256, foundOnRemote, userSelectedUid.get()));
-		    				
-		    			} else {
-		    				selected = Optional.of(new JarReport(jar.name, jarDirForReport, jar.hashes.jarSha256, false, userSelectedUid.get()));
+			var jarCount = jarInputs.size();
+			var firstJarIndex = Math.min(args.start - 1, jarCount);
+			var lastJarIndex = args.limit >= 0 ? Math.min(firstJarIndex + args.limit, jarCount) : jarCount;
+			var selectedJars = jarInputs.subList(firstJarIndex, lastJarIndex);
+			
+			// first we do offline analysis and start online analysis for all jars
+			// offline futures are not kept, so that in streaming mode the state of a jar is released once its entry in 'waiting' is cleared
+			var jarsInFlight = streaming ? new Semaphore(args.maxJarsInFlight) : null;
+			List<CompletableFuture<JarAnalysisWaitingForCompletion>> waiting = (streaming
+							? offlineAnalyzer.analyzeBounded(selectedJars, jarsInFlight)
+							: offlineAnalyzer.analyze(selectedJars))
+					.stream()
+					.map(offlineResult -> offlineResult.thenApply(result -> startOnlineAnalysisOnce(result.jar, result.analysis)))
+					.collect(Collectors.toList());
+			
+			if (!streaming) {
+				// results are collected in original order, so that console output and report do not depend on thread scheduling
+				var jarIndex = firstJarIndex;
+			    for (var jarAnalysis : waiting) {
+			    	jarAnalysis.join();
+					cli.println(StringUtil.RETURN_LINE + "Offline-Analysis: Jar " + (jarIndex + 1) + "/" + jarCount);
+					jarIndex++;
+			    }
+				cli.println();// end System.out.print with StringUtil.RETURN_LINE
+				if (cache.isPresent()) {
+					cli.println("Fingerprint cache: " + offlineAnalyzer.getCacheHits() + "/" + waiting.size() + " jars unchanged since last run.", LOG::info);
+				}
+			} else {
+				cli.println("Streaming mode enabled, at most " + args.maxJarsInFlight + " jars are analyzed ahead of the current jar.", LOG::info);
+			}
+			if (!args.offline) {
+				// without streaming, candidates of all jars are known at this point, so requests needed by most jars can be issued first
+				online.startRequests();
+			}
+			
+		    var onlineCheckInitialized = false;
+		    cli.println("Online-Check initializing...");
+		    
+		    var count = 1;
+		    var identicalCount = 0;
+		    
+		    // TODO entirely remove use of futures here
+		    var jarReportFutures = new ArrayList<CompletableFuture<JarReport>>(waiting.size());
+		    
+		    // then wait for each jar to finish online analysis to complete analysis
+		    for (int i = 0; i < waiting.size(); i++) {
+		    	var jarAnalysis = waiting.get(i).join();
+		    	var jar = jarAnalysis.jar;
+		    	
+		    	// MavenRepoChecker initialization might be finished asynchronously before this point in time,
+	    		// but we can only start to print after offline analysis is finished to not destroy RETURN_LINE printlns.
+		    	if (!onlineCheckInitialized) {
+		    		onlineCheckInitialized = true;
+		    		
+			    	// join to make sure async stuff is done
+			    	jarAnalysis.onlineCompletionWithVersion.join();
+			    	jarAnalysis.onlineCompletionNoVersion.join();
+		    		
+		    		cli.println("Online-Check initialized!");
+		    		cli.println("Online-Check started.");
+		    		cli.println();
+		    	}
+		    	
+		    	var jarDirForReport = Paths.get(".").resolve(Util.CURRENT_DIR.toAbsolutePath().relativize(Paths.get(jar.dir))).toString();
+		    	
+		    	var contentHash = jar.hashes.jarSha256;
+		    	var identical = resolvedByContent.get(contentHash);
+		    	
+		    	var autoSelected = identical == null ? autoSelectCandidate(jarAnalysis) : Optional.<UidCheck>empty();
+		    	Optional<JarReport> selected = autoSelected.map(uid -> new JarReport(jar.name, jarDirForReport, jar.nestedIn, contentHash, jar.hashes.fingerprintVersion, true, uid.fullUid));
+		    	
+		    	var nestedInfo = jar.nestedIn.map(nestedIn -> " [" + nestedIn + "]").orElse("");
+		    	cli.println(jarAnalysis.jar.name + nestedInfo + " (" + count + "/" + waiting.size() + ")");
+		    	if (identical != null) {
+		    		// same content was already resolved at another location, so we only add a report entry for this location
+		    		cli.println("  Identical to already analyzed jar: " + identical.firstName + " [" + identical.firstNestedIn.orElse(identical.firstDir) + "]");
+		    		cli.println("  " + (identical.report.isPresent() ? "Using same result: " + identical.report.get().result : "Excluded from report like identical jar."));
+		    		selected = identical.report.map(report -> new JarReport(jar.name, jarDirForReport, jar.nestedIn, contentHash, report.fingerprintVersion, report.foundOnRemote, report.result));
+		    		identicalCount++;
+		    	} else {
+		    		printer.printResults(jarAnalysis, autoSelected, args.forceDetailedOutput, args.offline);
+		    	}
+		    	
+		    	if (selected.isEmpty() && identical == null) {
+		    		if (args.interactive) {
+		    			var userResult = userSelectCandidate(cli, jarAnalysis);
+		    			if (userResult.wantsToExit) {
+		    				break;
 		    			}
-		    			
+			    		var userSelectedUid = userResult.selected;
+			    		if (userSelectedUid.isPresent()) {
+			    			
+			    			// We check again to see if user has provided a UID of a jar that is available online and identical, using cache if possible.
+			    			if (!args.offline) {
+			    				var checkedSet = online.findJars(jar.hashes, Set.of(userSelectedUid.get()));
+			    				// We do not make use of asynchronous downloading here because we want to notify user:
+			    				// - if the UID he selected could be found online
+			    				// - if the UID he selected might conflict with a non-identical online jar
+			    				var uidCheck = checkedSet.join().iterator().next();
+			    				var foundIdentical = uidCheck.matchType.isConsideredIdentical();
+			    				var foundNonIdentical = uidCheck.matchType.equals(OnlineMatch.FOUND_NO_MATCH);
+			    				if (foundIdentical) {
+			    					cli.println();
+			    					cli.println("  CONFLICT-CHECK: Ok, found identical JAR online.");
+			    				} else if (foundNonIdentical) {
+			    					cli.println();
+			    					cli.println("  CONFLICT-CHECK: WARNING!!!");
+			    					cli.println("  Found non-identical JAR with same UID online!", LOG::warn);
+			    					cli.println("  Nevertheless the JAR's 'foundOnRemote' flag will be set to `true` to prevent it from being installed/deployed!", LOG::warn);
+			    					if (uidCheck.url.isPresent()) {
+				    					cli.println("  " + uidCheck.url.get(), LOG::warn);
+			    					}
+			    				} else {
+			    					cli.println();
+			    					cli.println("  CONFLICT-CHECK: Ok, found no conflicting JARs online.");
+			    				}
+			    				var foundOnRemote = foundIdentical || foundNonIdentical;
+		    					selected = Optional.of(new JarReport(jar.name, jarDirForReport, jar.nestedIn, jar.hashes.jarSha256, jar.hashes.fingerprintVersion, foundOnRemote, userSelectedUid.get()));
+			    				
+			    			} else {
+			    				selected = Optional.of(new JarReport(jar.name, jarDirForReport, jar.nestedIn, jar.hashes.jarSha256, jar.hashes.fingerprintVersion, false, userSelectedUid.get()));
+			    			}
+			    			
+			    		}
+			    		cli.askUserToContinue("  ");
 		    		}
-		    		cli.askUserToContinue("  ");
-	    		}
-	    	}
-	    	if (selected.isPresent()) {
-	    		jarReportFutures.add(CompletableFuture.completedFuture(selected.get()));
-	    	}
-	    	
-	    	printer.printJarEndSeparator();
-	    	count++;
-	    }
-	    
-    	int total = waiting.size();
- 	    int skipped = total - jarReportFutures.size();
- 	    cli.println("Analysis complete (" + skipped + "/" + total + " excluded from report).", LOG::info);
+		    	}
+		    	if (identical == null) {
+		    		resolvedByContent.put(contentHash, new ContentResolution(jar, selected));
+		    		onlineByContent.remove(contentHash);
+		    	}
+		    	if (selected.isPresent()) {
+		    		jarReportFutures.add(CompletableFuture.completedFuture(selected.get()));
+		    	}
+		    	
+		    	printer.printJarEndSeparator();
+		    	count++;
+		    	
+		    	if (streaming) {
+		    		// report entry is final, release all analysis state of this jar and allow next jar to be analyzed
+		    		waiting.set(i, null);
+		    		jarsInFlight.release();
+		    	}
+		    }
+		    offlineAnalyzer.shutdown();
+		    if (cache.isPresent()) {
+		    	cache.get().save();
+		    }
+		    
+	    	int total = waiting.size();
+	 	    int skipped = total - jarReportFutures.size();
+	 	    if (identicalCount > 0) {
+	 	    	cli.println(identicalCount + "/" + total + " jars were identical to another jar and got the same result.", LOG::info);
+	 	    }
+	 	    cli.println("Analysis complete (" + skipped + "/" + total + " excluded from report).", LOG::info);
+	 	    LOG.info("Hashing engine: " + HashingEngine.stats());
  	    
- 	    if (!jarReportFutures.isEmpty()) {
- 	    	// write report
- 		    String dateTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss"));
- 			var reportFile = Paths.get(args.reportFile.replace(AnalysisArgs.DATETIME_SUBSTITUTE, dateTime));
+	 	    if (!jarReportFutures.isEmpty()) {
+	 	    	// write report
+	 		    String dateTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss"));
+	 			var reportFile = Paths.get(args.reportFile.replace(AnalysisArgs.DATETIME_SUBSTITUTE, dateTime));
  			
- 			cli.println("Writing report file: " + reportFile.toAbsolutePath(), LOG::info);
+	 			cli.println("Writing report file: " + reportFile.toAbsolutePath(), LOG::info);
  		    
- 		    var generalInfo = new AnalysisInfo(!args.offline, !args.offline ? online.getRemoteRepos() : List.of());
- 		    var jarReports = jarReportFutures.stream()
- 		    		.map(CompletableFuture::join)
- 		    		.collect(Collectors.toList());
- 		    var report = new AnalysisReport(generalInfo, jarReports);
- 		    var jsonWriter = new ObjectMapper().writerWithDefaultPrettyPrinter();
+	 		    var generalInfo = new AnalysisInfo(!args.offline, !args.offline ? online.getRemoteRepos() : List.of());
+	 		    var jarReports = jarReportFutures.stream()
+	 		    		.map(CompletableFuture::join)
+	 		    		.collect(Collectors.toList());
+	 		    var report = new AnalysisReport(generalInfo, jarReports);
+	 		    var jsonWriter = new ObjectMapper().writerWithDefaultPrettyPrinter();
  		    
- 	    	try {
- 	    		jsonWriter.writeValue(reportFile.toFile(), report);
- 			} catch (IOException e) {
- 				throw new UncheckedIOException(e);
- 			}
- 	    } else {
- 	    	cli.println("Skipping report file because no jars were resolved.", LOG::info);
- 	    }
+	 	    	try {
+	 	    		jsonWriter.writeValue(reportFile.toFile(), report);
+	 			} catch (IOException e) {
+	 				throw new UncheckedIOException(e);
+	 			}
+	 	    } else {
+	 	    	cli.println("Skipping report file because no jars were resolved.", LOG::info);
+	 	    }
+			
+	    	if (!args.offline) {
+	    		if (lookupCache.isPresent()) {
+	    			cli.println("Remote lookup cache: " + lookupCache.get().getHits() + " lookups answered without network requests.", LOG::info);
+	    			lookupCache.get().save();
+	    		}
+	    		cli.println("Online-Check cleanup started.", LOG::info);
+	    		online.shutdown();
+	    	}
+		}
+	}
+	
+	/**
+	 * Starts online analysis only for the first jar of each distinct content. Other jars with identical content share its online results.
+	 */
+	private JarAnalysisWaitingForCompletion startOnlineAnalysisOnce(Jar jar, JarAnalysisResult jarAnalysisResult) {
+		var contentHash = jar.hashes.jarSha256;
+		if (resolvedByContent.containsKey(contentHash)) {
+			// identical jar was already resolved (only possible in streaming mode), its result will be reused without any online checks
+			return new JarAnalysisWaitingForCompletion(jar, jarAnalysisResult,
+					CompletableFuture.completedFuture(Set.of()), CompletableFuture.completedFuture(Map.of()));
+		}
+		var first = onlineByContent.computeIfAbsent(contentHash, key -> startOnlineAnalysis(jar, jarAnalysisResult));
+		if (first.jar == jar) {
+			return first;
+		}
+		return new JarAnalysisWaitingForCompletion(jar, jarAnalysisResult, first.onlineCompletionWithVersion, first.onlineCompletionNoVersion);
+	}
+	
+	private JarAnalysisWaitingForCompletion startOnlineAnalysis(Jar jar, JarAnalysisResult jarAnalysisResult) {
+		var sorted = jarAnalysisResult.sortedValueCandidates;
 		
-    	if (!args.offline) {
-    		cli.println("Online-Check cleanup started.", LOG::info);
-    		online.shutdown();
-    	}
+		if (!args.offline) {
+			var toCheck = online.selectCandidatesToCheck(sorted);
+			
+			int highestVersionScore = toCheck.entrySet().stream()
+					.filter(entry -> entry.getKey().version != null)
+					.mapToInt(entry -> entry.getValue().get(MavenUidComponent.VERSION))
+					.max().orElse(0);
+			
+			var toCheckWithVersion = toCheck.entrySet().stream()
+					.filter(entry -> entry.getKey().version != null)
+					.map(Map.Entry::getKey)
+					.collect(Collectors.toSet());
+			
+			var toCheckNoVersion = toCheck.entrySet().stream()
+					.filter(entry -> {
+						if (entry.getKey().version == null) {
+							return true;
+						} else {
+							int versionScore = entry.getValue().get(MavenUidComponent.VERSION);
+							// if score too low and no other good version candidates
+							return highestVersionScore <= VERSION_NO_SEARCH_THRESHOLD && versionScore <= VERSION_SEARCH_MAX_THRESHOLD;
+						}
+					})
+					.map(Map.Entry::getKey)
+					.map(uid -> new MavenUid(uid.groupId, uid.artifactId, null))// null out version
+					.collect(Collectors.toSet());
+			
+			online.planChecks(toCheck, toCheckNoVersion);
+			var checkResultsWithVersion = online.findJars(jar.hashes, toCheckWithVersion);
+			var checkResultsNoVersion = online.searchVersionsAndFindJars(jar.hashes, toCheckNoVersion);
+			
+			return new JarAnalysisWaitingForCompletion(jar, jarAnalysisResult, checkResultsWithVersion, checkResultsNoVersion);
+		} else {
+			var checkResultsWithVersion = CompletableFuture.completedFuture(Set.<UidCheck>of());
+			var checkResultsNoVersion = CompletableFuture.completedFuture(Map.<MavenUid, Set<UidCheck>>of());
+			
+			return new JarAnalysisWaitingForCompletion(jar, jarAnalysisResult, checkResultsWithVersion, checkResultsNoVersion);
+		}
 	}
 	
 	private Optional<UidCheck> autoSelectCandidate(JarAnalysisWaitingForCompletion jarAnalysis) {
@@ -452,7 +633,7 @@ public class Analyzer {
 							break;
 						} else if (manifest.isPresent() && inputString.equals("m!")) {
 							cli.println();
-							cli.println(manifest.get().fileAsString);
+							cli.println(manifest.get().getFileAsString());
 							cli.println();
 							cli.askUserToContinue(pad, "Press Enter to continue choosing a " + component.xmlTagName + "..." );
 						} else {
@@ -473,11 +654,10 @@ public class Analyzer {
 					if (selected.isEmpty()) {
 						cli.println(pad + "Empty! Please enter the value directly or enter '<number>!' to select a proposal from above.");
 					} else {
-						Pattern pattern = Regex.getPatternForUserInputValidation(component);
-						Matcher matcher = pattern.matcher(selected);
-						if (matcher.find()) {
+						if (Scan.isValidUserInput(component, selected)) {
 							hasCorrectInput = true;
 						} else {
+							Pattern pattern = Regex.getPatternForUserInputValidation(component);
 							cli.println(pad + "Given value does not seem to be a valid " + component.xmlTagName + "!");
 							cli.println(pad + "Value must match regex: " + pattern.toString());
 						}
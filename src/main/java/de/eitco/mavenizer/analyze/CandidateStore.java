@@ -0,0 +1,216 @@
+package de.eitco.mavenizer.analyze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import de.eitco.mavenizer.MavenUid.MavenUidComponent;
+import de.eitco.mavenizer.analyze.JarAnalyzer.JarAnalyzerType;
+import de.eitco.mavenizer.analyze.JarAnalyzer.ValueCandidateCollector;
+import de.eitco.mavenizer.analyze.ValueCandidate.ValueSource;
+
+/**
+ * Collects value candidates of a single jar at a time and is reused for all jars analyzed by the same worker thread, so that
+ * maps, buffers and collectors are not allocated again for each jar.
+ * <br>
+ * Candidates found by content analyzers are first buffered in primitive arrays together with the index of their analyzer and are
+ * collected in registration order of analyzers afterwards. Candidates are kept in insertion order, so candidates with equal score
+ * are always sorted the same way, no matter how many jars the store has seen before.
+ * Candidate values are interned per worker, so equal values of different jars share the same string.
+ */
+final class CandidateStore implements ValueCandidateCollector {
+	
+	private static final int MAX_INTERNED = 4096;
+	
+	private static final Comparator<ValueCandidate> SCORE_SUM_DESCENDING = Comparator.comparing(ValueCandidate::getScoreSum).reversed();
+	private static final Comparator<ValueSource> SCORE_DESCENDING = Comparator.comparing((ValueSource source) -> source.score).reversed();
+	
+	private static final MavenUidComponent[] COMPONENTS = MavenUidComponent.values();
+	
+	// collected candidates per MavenUidComponent ordinal
+	private final Map<String, ValueCandidate>[] collected;
+	private final Map<MavenUidComponent, Map<String, ValueCandidate>> collectedView;
+	private final Map<String, String> interned = new HashMap<>();
+	private final Map<String, Integer> scoreSums = new HashMap<>();
+	
+	// buffered candidates of content analyzers
+	private int bufferSize = 0;
+	private int[] bufferAnalyzer = new int[32];
+	private int[] bufferComponent = new int[32];
+	private String[] bufferValue = new String[32];
+	private int[] bufferScore = new int[32];
+	private Object[] bufferDetails = new Object[32];// String or Supplier<String>
+	
+	// analyzer that candidates are currently added for, buffered if index is not negative
+	private JarAnalyzerType currentType = null;
+	private int currentIndex = -1;
+	
+	@SuppressWarnings("unchecked")
+	CandidateStore() {
+		collected = new Map[COMPONENTS.length];
+		var view = new EnumMap<MavenUidComponent, Map<String, ValueCandidate>>(MavenUidComponent.class);
+		for (var component : COMPONENTS) {
+			collected[component.ordinal()] = new LinkedHashMap<>();
+			view.put(component, Collections.unmodifiableMap(collected[component.ordinal()]));
+		}
+		collectedView = Collections.unmodifiableMap(view);
+	}
+	
+	/**
+	 * Removes all candidates of the previous jar.
+	 */
+	void reset() {
+		for (var candidates : collected) {
+			candidates.clear();
+		}
+		Arrays.fill(bufferValue, 0, bufferSize, null);
+		Arrays.fill(bufferDetails, 0, bufferSize, null);
+		bufferSize = 0;
+		currentType = null;
+		currentIndex = -1;
+		if (interned.size() > MAX_INTERNED) {
+			interned.clear();
+		}
+	}
+	
+	/**
+	 * @return Read-only view of collected candidates, which is only valid until next {@link #reset()}.
+	 */
+	Map<MavenUidComponent, Map<String, ValueCandidate>> collected() {
+		return collectedView;
+	}
+	
+	/**
+	 * @return This store as collector that buffers candidates of given analyzer until {@link #collectBuffered(List)} is called.
+	 */
+	ValueCandidateCollector buffering(JarAnalyzerType type, int registrationIndex) {
+		currentType = type;
+		currentIndex = registrationIndex;
+		return this;
+	}
+	
+	/**
+	 * @return This store as collector that collects candidates of given analyzer immediately.
+	 */
+	ValueCandidateCollector collecting(JarAnalyzerType type) {
+		currentType = type;
+		currentIndex = -1;
+		return this;
+	}
+	
+	@Override
+	public void addCandidate(MavenUidComponent component, String value, int confidenceScore, String sourceDetails) {
+		add(component, value, confidenceScore, sourceDetails == null ? null : intern(sourceDetails));
+	}
+	
+	@Override
+	public void addCandidate(MavenUidComponent component, String value, int confidenceScore, Supplier<String> sourceDetails) {
+		add(component, value, confidenceScore, sourceDetails);
+	}
+	
+	private void add(MavenUidComponent component, String value, int confidenceScore, Object sourceDetails) {
+		if (currentType == null) {
+			throw new IllegalStateException("Candidates can only be added while an analyzer is running!");
+		}
+		if (currentIndex >= 0) {
+			if (bufferSize == bufferValue.length) {
+				int capacity = bufferSize * 2;
+				bufferAnalyzer = Arrays.copyOf(bufferAnalyzer, capacity);
+				bufferComponent = Arrays.copyOf(bufferComponent, capacity);
+				bufferValue = Arrays.copyOf(bufferValue, capacity);
+				bufferScore = Arrays.copyOf(bufferScore, capacity);
+				bufferDetails = Arrays.copyOf(bufferDetails, capacity);
+			}
+			bufferAnalyzer[bufferSize] = currentIndex;
+			bufferComponent[bufferSize] = component.ordinal();
+			bufferValue[bufferSize] = intern(value);
+			bufferScore[bufferSize] = confidenceScore;
+			bufferDetails[bufferSize] = sourceDetails;
+			bufferSize++;
+		} else {
+			collect(currentType, component.ordinal(), intern(value), confidenceScore, sourceDetails);
+		}
+	}
+	
+	/**
+	 * Collects all buffered candidates, candidates of analyzers are collected in the order of given analyzer types.
+	 * @param registeredTypes Types of all analyzers, indexed by registration index given to {@link #buffering(JarAnalyzerType, int)}.
+	 */
+	void collectBuffered(List<JarAnalyzerType> registeredTypes) {
+		for (int analyzer = 0; analyzer < registeredTypes.size(); analyzer++) {
+			var type = registeredTypes.get(analyzer);
+			for (int i = 0; i < bufferSize; i++) {
+				if (bufferAnalyzer[i] == analyzer) {
+					collect(type, bufferComponent[i], bufferValue[i], bufferScore[i], bufferDetails[i]);
+				}
+			}
+		}
+		currentType = null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void collect(JarAnalyzerType type, int component, String value, int confidenceScore, Object sourceDetails) {
+		var candidates = collected[component];
+		var candidate = candidates.get(value);
+		if (candidate == null) {
+			candidate = new ValueCandidate(value);
+			candidates.put(value, candidate);
+		}
+		var source = sourceDetails instanceof Supplier
+				? new ValueSource(type, confidenceScore, (Supplier<String>) sourceDetails)
+				: new ValueSource(type, confidenceScore, (String) sourceDetails);
+		candidate.addSource(source);
+	}
+	
+	/**
+	 * @return True if best (non-null) buffered candidate of each Maven UID component reaches given score.
+	 */
+	boolean isBufferedCertain(int threshold) {
+		for (var component : COMPONENTS) {
+			scoreSums.clear();
+			int best = Integer.MIN_VALUE;
+			for (int i = 0; i < bufferSize; i++) {
+				if (bufferComponent[i] == component.ordinal() && bufferValue[i] != null) {
+					best = Math.max(best, scoreSums.merge(bufferValue[i], bufferScore[i], Integer::sum));
+				}
+			}
+			if (best < threshold) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return Collected candidates, sorted by score sum (highest first), with sources sorted by score. Unlike the store, the result can be kept.
+	 */
+	Map<MavenUidComponent, List<ValueCandidate>> sorted() {
+		var sorted = new EnumMap<MavenUidComponent, List<ValueCandidate>>(MavenUidComponent.class);
+		for (var component : COMPONENTS) {
+			var candidates = collected[component.ordinal()];
+			var list = new ArrayList<ValueCandidate>(candidates.size());
+			for (var candidate : candidates.values()) {
+				candidate.sortSources(SCORE_DESCENDING);
+				list.add(candidate);
+			}
+			list.sort(SCORE_SUM_DESCENDING);
+			sorted.put(component, list);
+		}
+		return Collections.unmodifiableMap(sorted);
+	}
+	
+	private String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		var existing = interned.putIfAbsent(value, value);
+		return existing != null ? existing : value;
+	}
+}
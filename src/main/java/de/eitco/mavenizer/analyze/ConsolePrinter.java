@@ -7,6 +7,7 @@ import java.util.Set;
 import java.util.function.BiFunction;
 
 import de.eitco.mavenizer.Cli;
+import de.eitco.mavenizer.FingerprintVersion;
 import de.eitco.mavenizer.MavenUid;
 import de.eitco.mavenizer.MavenUid.MavenUidComponent;
 import de.eitco.mavenizer.StringUtil;
@@ -37,7 +38,9 @@ public class ConsolePrinter {
     		}
     	}
     	cli.println();
-    	cli.println("    SHA_256 (uncompressed): " + jarAnalysis.jar.hashes.jarSha256);
+    	var hashes = jarAnalysis.jar.hashes;
+    	var versionInfo = hashes.fingerprintVersion == FingerprintVersion.V1 ? "" : ", " + hashes.fingerprintVersion;
+    	cli.println("    SHA_256 (uncompressed" + versionInfo + "): " + hashes.jarSha256);
     	if (jarAnalysis.offlineResult.manifestFile.isEmpty()) {
     		cli.println("    WARNING: Jar is missing 'META-INF/MANIFEST.MF'!");
     	}
@@ -106,7 +109,7 @@ public class ConsolePrinter {
 				for (int i = 0; i < candidate.sources.size(); i++) {
 					var source = candidate.sources.get(i);
 					var valueString = pad + "    " + StringUtil.rightPad(i == 0 ? valueAndScore : "", valuePadding + 2);
-					var sourceString = " (" + source.score + " | " + source.analyzer.displayName + " -> " + source.details + ")";
+					var sourceString = " (" + source.score + " | " + source.analyzer.displayName + " -> " + source.getDetails() + ")";
 					cli.println(valueString + sourceString);
 				}
 			}
@@ -0,0 +1,350 @@
+package de.eitco.mavenizer.analyze;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.eitco.mavenizer.ClassHashes;
+import de.eitco.mavenizer.FingerprintVersion;
+import de.eitco.mavenizer.JarChecksums;
+import de.eitco.mavenizer.JarSource;
+import de.eitco.mavenizer.MavenUid.MavenUidComponent;
+import de.eitco.mavenizer.NestedArchives;
+import de.eitco.mavenizer.Util;
+import de.eitco.mavenizer.analyze.Analyzer.JarAnalysisResult;
+import de.eitco.mavenizer.analyze.Analyzer.JarHashes;
+import de.eitco.mavenizer.analyze.JarAnalyzer.JarAnalyzerType;
+import de.eitco.mavenizer.analyze.JarAnalyzer.ManifestFile;
+import de.eitco.mavenizer.analyze.ValueCandidate.ValueSource;
+
+/**
+ * On-disk cache of hashes and offline analysis results of jars, so that unchanged jars do not need to be read again when analysis is repeated.
+ * <br>
+ * Entries are keyed by canonical jar path and are only valid if file size and last modification time of the jar are still the same.
+ * All entries are loaded into memory as undecoded bytes when the cache is opened and the whole cache is written back by {@link #save()}.
+ * Entries are also stored encoded when added, so cached results are not kept reachable. Class hashes that are only computed after a jar
+ * was cached or read from cache are added to its entry once they are computed.
+ */
+public class FingerprintCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FingerprintCache.class);
+
+	public static final String FILENAME = "fingerprint-cache.bin";
+
+	private static final int MAGIC = 0x454d4643;// "EMFC"
+	// must be incremented whenever the binary format or the offline analysis logic changes, which invalidates all existing entries
+	private static final int FORMAT_VERSION = 6;
+
+	public static class CacheKey {
+		public final String canonicalPath;
+		public final long size;
+		public final long lastModified;
+
+		public CacheKey(String canonicalPath, long size, long lastModified) {
+			this.canonicalPath = canonicalPath;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * @param nestedPath For jars inside archives, path of jar inside given archive file. Archive size and time are used to detect changes.
+		 */
+		public static CacheKey of(Path file, Optional<String> nestedPath) {
+			try {
+				var canonical = file.toRealPath();
+				var key = canonical.toString() + nestedPath.map(path -> NestedArchives.SEPARATOR + path).orElse("");
+				return new CacheKey(key, Files.size(canonical), Files.getLastModifiedTime(canonical).toMillis());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	public static class CachedJar {
+		public final JarHashes hashes;
+		public final JarAnalysisResult analysis;
+		/** Certainty threshold analysis was run with, since it decides which analyzers were skipped. */
+		public final int certaintyThreshold;
+
+		public CachedJar(JarHashes hashes, JarAnalysisResult analysis, int certaintyThreshold) {
+			this.hashes = hashes;
+			this.analysis = analysis;
+			this.certaintyThreshold = certaintyThreshold;
+		}
+	}
+
+	private static class Entry {
+		final long size;
+		final long lastModified;
+		final byte[] data;
+
+		Entry(long size, long lastModified, byte[] data) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.data = data;
+		}
+	}
+
+	private final Path cacheFile;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private FingerprintCache(Path cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Loads cache from given directory. If cache file does not exist, cannot be read or was written by an incompatible version, cache starts empty.
+	 */
+	public static FingerprintCache open(Path cacheDir) {
+		var cache = new FingerprintCache(cacheDir.resolve(FILENAME));
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache.cacheFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				LOG.info("Ignoring fingerprint cache '" + cache.cacheFile + "' because it was written by an incompatible version.");
+				return cache;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				var path = in.readUTF();
+				var size = in.readLong();
+				var lastModified = in.readLong();
+				var data = new byte[in.readInt()];
+				in.readFully(data);
+				cache.entries.put(path, new Entry(size, lastModified, data));
+			}
+		} catch (NoSuchFileException e) {
+			LOG.debug("Fingerprint cache '" + cache.cacheFile + "' does not exist yet.");
+		} catch (IOException e) {
+			LOG.warn("Failed to read fingerprint cache '" + cache.cacheFile + "', cache will be rebuilt.", e);
+			cache.entries.clear();
+		}
+		return cache;
+	}
+
+	/**
+	 * Deletes cache file in given directory if it exists.
+	 */
+	public static void clear(Path cacheDir) {
+		try {
+			Files.deleteIfExists(cacheDir.resolve(FILENAME));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @param reopen Opens the jar, used to compute class hashes later if they were not computed before the jar was cached.
+	 * @return Cached results if jar was cached and has not changed since.
+	 */
+	public Optional<CachedJar> get(CacheKey key, Supplier<JarSource> reopen) {
+		var entry = entries.get(key.canonicalPath);
+		if (entry == null || entry.size != key.size || entry.lastModified != key.lastModified) {
+			return Optional.empty();
+		}
+		try {
+			var cached = decode(new DataInputStream(new ByteArrayInputStream(entry.data)), reopen);
+			if (cached.hashes.getClassHashesIfComputed().isEmpty()) {
+				cached.hashes.onClassHashesComputed(classHashes -> addClassHashes(key.canonicalPath, entry, classHashes));
+			}
+			return Optional.of(cached);
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Ignoring corrupt fingerprint cache entry for '" + key.canonicalPath + "'.", e);
+			entries.remove(key.canonicalPath, entry);
+			return Optional.empty();
+		}
+	}
+
+	public void put(CacheKey key, JarHashes hashes, JarAnalysisResult analysis, int certaintyThreshold) {
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new DataOutputStream(bytes)) {
+			encode(out, hashes, analysis, certaintyThreshold);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		var entry = new Entry(key.size, key.lastModified, bytes.toByteArray());
+		entries.put(key.canonicalPath, entry);
+		hashes.onClassHashesComputed(classHashes -> addClassHashes(key.canonicalPath, entry, classHashes));
+	}
+
+	/**
+	 * Adds class hashes to an entry that was encoded without them, unless entry has been replaced or removed since.
+	 */
+	private void addClassHashes(String path, Entry entry, ClassHashes classHashes) {
+		var data = entry.data;
+		try {
+			// skip fields that are written before class hashes by encode
+			var bytesIn = new ByteArrayInputStream(data);
+			var in = new DataInputStream(bytesIn);
+			in.readUTF();
+			in.readUTF();
+			in.readInt();
+			if (in.readBoolean()) {
+				return;
+			}
+			int rest = data.length - bytesIn.available();
+			var bytes = new ByteArrayOutputStream(data.length);
+			try (var out = new DataOutputStream(bytes)) {
+				out.write(data, 0, rest - 1);
+				out.writeBoolean(true);
+				classHashes.writeTo(out);
+				out.write(data, rest, data.length - rest);
+			}
+			entries.replace(path, entry, new Entry(entry.size, entry.lastModified, bytes.toByteArray()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes all entries to cache file. File is replaced atomically if file system supports it, so an interrupted run cannot leave a broken cache.
+	 */
+	public void save() {
+		try {
+			Files.createDirectories(cacheFile.getParent());
+			var tempFile = Files.createTempFile(cacheFile.getParent(), FILENAME, ".tmp");
+			try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				var snapshot = List.copyOf(entries.entrySet());
+				out.writeInt(snapshot.size());
+				for (var entry : snapshot) {
+					var value = entry.getValue();
+					out.writeUTF(entry.getKey());
+					out.writeLong(value.size);
+					out.writeLong(value.lastModified);
+					out.writeInt(value.data.length);
+					out.write(value.data);
+				}
+			}
+			try {
+				Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void encode(DataOutput out, JarHashes hashes, JarAnalysisResult analysis, int certaintyThreshold) throws IOException {
+		out.writeUTF(hashes.jarSha256);
+		out.writeUTF(hashes.fingerprintVersion.name());
+		out.writeInt(certaintyThreshold);
+		var classHashes = hashes.getClassHashesIfComputed();
+		out.writeBoolean(classHashes.isPresent());
+		if (classHashes.isPresent()) {
+			classHashes.get().writeTo(out);
+		}
+		hashes.checksums.writeTo(out);
+
+		out.writeBoolean(analysis.manifestFile.isPresent());
+		if (analysis.manifestFile.isPresent()) {
+			writeBytes(out, analysis.manifestFile.get().bytes);
+		}
+
+		for (var component : MavenUidComponent.values()) {
+			var candidates = analysis.sortedValueCandidates.get(component);
+			out.writeInt(candidates.size());
+			for (var candidate : candidates) {
+				writeString(out, candidate.value);
+				out.writeInt(candidate.sources.size());
+				for (var source : candidate.sources) {
+					out.writeUTF(source.analyzer.name);
+					out.writeUTF(source.analyzer.displayName);
+					out.writeInt(source.score);
+					writeString(out, source.getDetails());
+				}
+			}
+		}
+	}
+
+	private static CachedJar decode(DataInput in, Supplier<JarSource> reopen) throws IOException {
+		var jarSha256 = in.readUTF();
+		var fingerprintVersion = FingerprintVersion.valueOf(in.readUTF());
+		var certaintyThreshold = in.readInt();
+		var classHashes = in.readBoolean() ? ClassHashes.readFrom(in) : null;
+		var checksums = JarChecksums.readFrom(in);
+
+		Optional<ManifestFile> manifest = Optional.empty();
+		if (in.readBoolean()) {
+			manifest = Optional.of(new ManifestFile(readBytes(in)));
+		}
+
+		var sorted = new EnumMap<MavenUidComponent, List<ValueCandidate>>(MavenUidComponent.class);
+		for (var component : MavenUidComponent.values()) {
+			int candidateCount = in.readInt();
+			var candidates = new ArrayList<ValueCandidate>(candidateCount);
+			for (int i = 0; i < candidateCount; i++) {
+				var candidate = new ValueCandidate(readString(in));
+				int sourceCount = in.readInt();
+				for (int j = 0; j < sourceCount; j++) {
+					// analyzers that are not installed anymore can still be displayed
+					var analyzer = new JarAnalyzerType(in.readUTF(), in.readUTF());
+					var score = in.readInt();
+					candidate.addSource(new ValueSource(analyzer, score, readString(in)));
+				}
+				candidates.add(candidate);
+			}
+			sorted.put(component, candidates);
+		}
+
+		var hashes = classHashes != null
+				? new JarHashes(jarSha256, fingerprintVersion, classHashes, checksums)
+				: new JarHashes(jarSha256, fingerprintVersion, () -> Util.classHashes(reopen), checksums);
+		return new CachedJar(hashes, new JarAnalysisResult(manifest, Map.copyOf(sorted)), certaintyThreshold);
+	}
+
+	// DataOutput.writeUTF is limited to 64k bytes, which manifests and source details might exceed
+	private static void writeString(DataOutput out, String value) throws IOException {
+		writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		var bytes = readBytes(in);
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static byte[] readBytes(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		var bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
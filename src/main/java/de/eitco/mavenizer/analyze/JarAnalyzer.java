@@ -2,32 +2,35 @@ package de.eitco.mavenizer.analyze;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.function.BiFunction;
+import java.util.ServiceLoader;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.jar.Manifest;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
-import de.eitco.mavenizer.Cli;
+import de.eitco.mavenizer.JarSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.eitco.mavenizer.MavenUid.MavenUidComponent;
+import de.eitco.mavenizer.Util.JarDigester;
 import de.eitco.mavenizer.analyze.Analyzer.Jar;
 import de.eitco.mavenizer.analyze.Analyzer.JarAnalysisResult;
-import de.eitco.mavenizer.analyze.ValueCandidate.ValueSource;
+import de.eitco.mavenizer.analyze.Analyzer.JarHashes;
+import de.eitco.mavenizer.analyze.JarContentAnalyzer.Cost;
+import de.eitco.mavenizer.analyze.JarContentAnalyzer.Input;
 import de.eitco.mavenizer.analyze.jar.ClassFilepathAnalyzer;
 import de.eitco.mavenizer.analyze.jar.ClassTimestampAnalyzer;
 import de.eitco.mavenizer.analyze.jar.JarFilenameAnalyzer;
@@ -37,35 +40,70 @@ import de.eitco.mavenizer.analyze.jar.PostAnalyzer;
 
 public class JarAnalyzer {
 	
-	public enum JarAnalyzerType {
-		MANIFEST("Manifest"),
-		JAR_FILENAME("Jar-Filename"),
-		POM("Pom"),
-		CLASS_FILEPATH("Class-Filepath"),
-		CLASS_TIMESTAMP("Class-Timestamp"),
-		POST("Post-Analysis");
+	/**
+	 * Identifies the analyzer that found a value candidate. Constants are used by built-in analyzers, other {@link JarContentAnalyzer}s
+	 * create their own type with a unique name.
+	 */
+	public static final class JarAnalyzerType {
+		public static final JarAnalyzerType MANIFEST = new JarAnalyzerType("MANIFEST", "Manifest");
+		public static final JarAnalyzerType JAR_FILENAME = new JarAnalyzerType("JAR_FILENAME", "Jar-Filename");
+		public static final JarAnalyzerType POM = new JarAnalyzerType("POM", "Pom");
+		public static final JarAnalyzerType CLASS_FILEPATH = new JarAnalyzerType("CLASS_FILEPATH", "Class-Filepath");
+		public static final JarAnalyzerType CLASS_TIMESTAMP = new JarAnalyzerType("CLASS_TIMESTAMP", "Class-Timestamp");
+		public static final JarAnalyzerType POST = new JarAnalyzerType("POST", "Post-Analysis");
 		
+		public final String name;
 		public final String displayName;
-		private JarAnalyzerType(String displayName) {
-			this.displayName = displayName;
+		public JarAnalyzerType(String name, String displayName) {
+			this.name = Objects.requireNonNull(name);
+			this.displayName = Objects.requireNonNull(displayName);
+		}
+		@Override
+		public int hashCode() {
+			return name.hashCode();
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (obj == null) return false;
+			if (getClass() != obj.getClass()) return false;
+			return name.equals(((JarAnalyzerType) obj).name);
+		}
+		@Override
+		public String toString() {
+			return name;
 		}
 	}
 	
 	public static class JarEntry {
-		public final Path path;// relative to jar root
-		public final FileTime timestamp;
-		public JarEntry(Path path, FileTime createdAt) {
-			this.path = path;
+		public static final long NO_TIMESTAMP = -1;// returned by ZipEntry.getTime() if entry has no time
+		
+		public final String name;// zip entry name, relative to jar root
+		public final long timestamp;// creation or modification time in milliseconds since epoch
+		public JarEntry(String name, long createdAt) {
+			this.name = name;
 			this.timestamp = createdAt;
 		}
 	}
 	
+	/**
+	 * Manifest is kept as raw bytes for the whole run, text and attributes are only decoded on access and are not retained.
+	 */
 	public static class ManifestFile {
-		public final String fileAsString;
-		public final Manifest manifest;
-		public ManifestFile(String fileAsString, Manifest manifest) {
-			this.fileAsString = fileAsString;
-			this.manifest = manifest;
+		public final byte[] bytes;
+		public ManifestFile(byte[] bytes) {
+			this.bytes = bytes;
+		}
+		public String getFileAsString() {
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		public Manifest parse() {
+			try {
+				LOG.debug("Parsing manifest.");
+				return new Manifest(new ByteArrayInputStream(bytes));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
 		}
 	}
 	
@@ -90,24 +128,65 @@ public class JarAnalyzer {
 	}
 	
 	/**
-	 * Consumer function that is used by analyzers in {@link de.eitco.mavenizer.analyze.jar} to return any number of value candidates.
+	 * Everything offline analysis needs from a jar, collected while reading it once.
 	 */
-	@FunctionalInterface
-	public static interface ValueCandidateCollector {
-		void addCandidate(MavenUidComponent component, String value, int confidenceScore, String sourceDetails);
+	public static class JarContent {
+		public final JarHashes hashes;
+		public final List<JarEntry> classFiles;
+		public final List<FileBuffer> pomFiles;
+		public final Optional<ManifestFile> manifest;
+		
+		public JarContent(JarHashes hashes, List<JarEntry> classFiles, List<FileBuffer> pomFiles, Optional<ManifestFile> manifest) {
+			this.hashes = hashes;
+			this.classFiles = classFiles;
+			this.pomFiles = pomFiles;
+			this.manifest = manifest;
+		}
+	}
+	
+	/**
+	 * Everything a {@link JarContentAnalyzer} can read. Manifest is parsed on first access and shared by all analyzers of a jar.
+	 */
+	public static class AnalyzerInput {
+		public final Jar jar;
+		public final JarContent content;
+		/** Candidates found by analyzers that ran before, only complete for analyzers with input {@link Input#CANDIDATES}. */
+		public final Map<MavenUidComponent, Map<String, ValueCandidate>> candidates;
+		private Optional<Manifest> manifest = null;
+		
+		public AnalyzerInput(Jar jar, JarContent content, Map<MavenUidComponent, Map<String, ValueCandidate>> candidates) {
+			this.jar = jar;
+			this.content = content;
+			this.candidates = candidates;
+		}
+		public Optional<Manifest> getManifest() {
+			if (manifest == null) {
+				manifest = content.manifest.map(ManifestFile::parse);
+			}
+			return manifest;
+		}
+		public boolean has(Input input) {
+			switch (input) {
+			case MANIFEST: return content.manifest.isPresent();
+			case POM_FILES: return !content.pomFiles.isEmpty();
+			case CLASS_FILES: return !content.classFiles.isEmpty();
+			default: return true;
+			}
+		}
 	}
 	
 	/**
-	 * Helper function that extends {@link ValueCandidateCollector} to also provide {@link JarAnalyzerType}.
+	 * Consumer function that is used by analyzers in {@link de.eitco.mavenizer.analyze.jar} to return any number of value candidates.
 	 */
 	@FunctionalInterface
-	private static interface AnalyzerCandidateCollector {
-		void addCandidate(JarAnalyzerType analyzer, MavenUidComponent component, String value, int confidenceScore, String sourceDetails);
+	public static interface ValueCandidateCollector {
+		void addCandidate(MavenUidComponent component, String value, int confidenceScore, String sourceDetails);
 		
-		default ValueCandidateCollector withAnalyzer(JarAnalyzerType analyzer) {
-			return (component, value, confidenceScore, sourceDetails) -> {
-				this.addCandidate(analyzer, component, value, confidenceScore, sourceDetails);
-			};
+		/**
+		 * Same as {@link #addCandidate(MavenUidComponent, String, int, String)}, but details are only created if they are actually needed (for example printed).
+		 */
+		default void addCandidate(MavenUidComponent component, String value, int confidenceScore, Supplier<String> sourceDetails) {
+			addCandidate(component, value, confidenceScore, sourceDetails.get());
 		}
 	}
 	
@@ -115,136 +194,166 @@ public class JarAnalyzer {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(JarAnalyzer.class);
 
-	private final Cli cli;
+	private final int certaintyThreshold;
+	private final List<JarContentAnalyzer> registeredAnalyzers;
+	// analyzers that do not need candidates of other analyzers, cheapest first
+	private final List<JarContentAnalyzer> contentAnalyzers;
+	// analyzers that need candidates of other analyzers (like post analyzer) and therefore run last
+	private final List<JarContentAnalyzer> postAnalyzers;
+	private final List<JarAnalyzerType> registeredTypes;
+	// one store per worker thread, reused for all jars analyzed by that thread
+	private final ThreadLocal<CandidateStore> candidateStores = ThreadLocal.withInitial(CandidateStore::new);
 
-	private final ManifestAnalyzer manifestAnalyzer;
-	private final JarFilenameAnalyzer jarNameAnalyzer;
-	private final PomAnalyzer pomAnalyzer;
-	private final ClassFilepathAnalyzer classAnalyzer;
-	private final ClassTimestampAnalyzer timeAnalyzer;
-	private final PostAnalyzer postAnalyzer;
-
-	public JarAnalyzer(Cli cli) {
-		this.cli = cli;
-		manifestAnalyzer = new ManifestAnalyzer();
-		jarNameAnalyzer = new JarFilenameAnalyzer();
-		pomAnalyzer = new PomAnalyzer();
-		classAnalyzer = new ClassFilepathAnalyzer(cli);
-		timeAnalyzer = new ClassTimestampAnalyzer();
-		postAnalyzer = new PostAnalyzer();
+	/**
+	 * @param certaintyThreshold If positive, expensive analyzers are skipped once the best candidate of each Maven UID component has at least
+	 *   this score. If 0, all analyzers run.
+	 */
+	public JarAnalyzer(int certaintyThreshold) {
+		this.certaintyThreshold = certaintyThreshold;
+		
+		var registered = new ArrayList<JarContentAnalyzer>(List.of(
+				new ClassFilepathAnalyzer(),
+				new ClassTimestampAnalyzer(),
+				new PomAnalyzer(),
+				new ManifestAnalyzer(),
+				new JarFilenameAnalyzer(),
+				new PostAnalyzer()));
+		for (var analyzer : ServiceLoader.load(JarContentAnalyzer.class)) {
+			LOG.debug("Found additional analyzer '" + analyzer.getType().displayName + "' (" + analyzer.getClass().getName() + ").");
+			registered.add(analyzer);
+		}
+		var types = new HashSet<JarAnalyzerType>();
+		for (var analyzer : registered) {
+			if (!types.add(analyzer.getType())) {
+				throw new IllegalStateException("Multiple analyzers with type '" + analyzer.getType() + "'!");
+			}
+		}
+		registeredAnalyzers = List.copyOf(registered);
+		registeredTypes = registeredAnalyzers.stream()
+				.map(JarContentAnalyzer::getType)
+				.collect(Collectors.toList());
+		
+		// sorting is stable, so analyzers with same cost run in registration order
+		contentAnalyzers = registered.stream()
+				.filter(analyzer -> !analyzer.getInputs().contains(Input.CANDIDATES))
+				.sorted(Comparator.comparing(JarContentAnalyzer::getCost))
+				.collect(Collectors.toList());
+		postAnalyzers = registered.stream()
+				.filter(analyzer -> analyzer.getInputs().contains(Input.CANDIDATES))
+				.collect(Collectors.toList());
 	}
 
-	public JarAnalysisResult analyzeOffline(Jar jar, InputStream compressedJarInput) {
+	/**
+	 * Reads and hashes the given jar in a single pass, inflating each entry only once.
+	 * @param digester New digester, which determines fingerprint version and whether entries can be hashed in parallel.
+	 */
+	public JarContent readJar(JarSource source, JarDigester digester) {
 		
 		List<FileBuffer> pomFiles = new ArrayList<>(2);
 		List<JarEntry> classFiles = new ArrayList<>();
 		
-		var manifest = readJarStream(compressedJarInput, (entry, in) -> {
-			return readJarEntry(entry, in, classFiles::add, pomFiles::add);
-		});
+		ManifestFile manifest = null;
+		for (var entry : source.entries()) {
+			var currentManifest = readJarEntry(entry, source, digester, classFiles::add, pomFiles::add);
+			if (manifest == null && currentManifest.isPresent()) {
+				manifest = currentManifest.get();
+			}
+		}
+		
+		return new JarContent(digester.finish(), classFiles, pomFiles, Optional.ofNullable(manifest));
+	}
+	
+	public JarAnalysisResult analyzeOffline(Jar jar, JarContent content) {
+		
+		var manifest = content.manifest;
 		
 		if (manifest.isEmpty()) {
 			LOG.warn("Did not find manifest in '" + jar.name + "'! Expected 'META-INF/MANIFEST.MF' to exist!");
 		}
 		
-		var collected = Map.<MavenUidComponent, Map<String, ValueCandidate>>of(
-				MavenUidComponent.GROUP_ID, new HashMap<>(),
-				MavenUidComponent.ARTIFACT_ID, new HashMap<>(),
-				MavenUidComponent.VERSION, new HashMap<>()
-				);
+		var store = candidateStores.get();
+		store.reset();
+		var input = new AnalyzerInput(jar, content, store.collected());
 		
-		AnalyzerCandidateCollector collector = (JarAnalyzerType analyzer, MavenUidComponent component, String value, int confidenceScore, String sourceDetails) -> {
-			Map<String, ValueCandidate> candidates = collected.get(component);
-			
-			var candidate = candidates.computeIfAbsent(value, ValueCandidate::new);
-			var source = new ValueSource(analyzer, confidenceScore, sourceDetails);
-			candidate.addSource(source);
-		};
-		
-		classAnalyzer.analyze(collector.withAnalyzer(classAnalyzer.getType()), classFiles);
-		timeAnalyzer.analyze(collector.withAnalyzer(timeAnalyzer.getType()), classFiles);
-		pomAnalyzer.analyze(collector.withAnalyzer(pomAnalyzer.getType()), pomFiles);
-		manifestAnalyzer.analyze(collector.withAnalyzer(manifestAnalyzer.getType()), manifest.map(m -> m.manifest));
-		jarNameAnalyzer.analyze(collector.withAnalyzer(jarNameAnalyzer.getType()), jar.name);
-		postAnalyzer.analyze(collector.withAnalyzer(postAnalyzer.getType()), collected); // post analyzer must run last
-		
-		var sorted = Map.<MavenUidComponent, List<ValueCandidate>>of(
-				MavenUidComponent.GROUP_ID, new ArrayList<>(),
-				MavenUidComponent.ARTIFACT_ID, new ArrayList<>(),
-				MavenUidComponent.VERSION, new ArrayList<>()
-				);
-		
-		var newScoreComparator = Comparator.comparing(ValueCandidate::getScoreSum).reversed();
-		var sourceComparator = Comparator.comparing((ValueSource source) -> source.score).reversed();
-		
-		for (var uidComponent : MavenUidComponent.values()) {
-			var currentCollected = collected.get(uidComponent);
-			var currentSorted = sorted.get(uidComponent);
-			
-			for (var candidate : currentCollected.values()) {
-				currentSorted.add(candidate);
-				candidate.sortSources(sourceComparator);
+		// Candidates are buffered and only collected in registration order of analyzers after all content analyzers ran, so that execution
+		// order (which depends on cost) does not change the results. Buffered scores decide if expensive analyzers can be skipped.
+		for (var analyzer : contentAnalyzers) {
+			if (!hasInputs(analyzer, input)) {
+				continue;
+			}
+			if (analyzer.getCost() == Cost.EXPENSIVE && certaintyThreshold > 0 && store.isBufferedCertain(certaintyThreshold)) {
+				LOG.debug("Skipping analyzer '" + analyzer.getType().displayName + "' for '" + jar.name + "', candidates are certain enough.");
+				continue;
+			}
+			analyzer.analyze(store.buffering(analyzer.getType(), registeredAnalyzers.indexOf(analyzer)), input);
+		}
+		store.collectBuffered(registeredTypes);
+		for (var analyzer : postAnalyzers) {
+			if (hasInputs(analyzer, input)) {
+				analyzer.analyze(store.collecting(analyzer.getType()), input);
 			}
-			currentSorted.sort(newScoreComparator);
 		}
 		
-		return new JarAnalysisResult(manifest, sorted);
+		return new JarAnalysisResult(manifest, store.sorted());
+	}
+	
+	private boolean hasInputs(JarContentAnalyzer analyzer, AnalyzerInput input) {
+		for (var required : analyzer.getInputs()) {
+			if (!input.has(required)) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
-	private Optional<ManifestFile> readJarEntry(ZipEntry entry, InputStream in, Consumer<JarEntry> onClass, Consumer<FileBuffer> onMavenFile) {
+	private Optional<ManifestFile> readJarEntry(ZipEntry entry, JarSource source, JarDigester digester, Consumer<JarEntry> onClass, Consumer<FileBuffer> onMavenFile) {
 		
 		var manifest = Optional.<ManifestFile>empty();
-		var entryPath = Paths.get(entry.getName());
-		var filenameLower = entryPath.getFileName().toString().toLowerCase();
+		var name = entry.getName();
 		
 		if (!entry.isDirectory()) {
-			if (filenameLower.equals(PomFileType.POM_XML.filename) || filenameLower.equals(PomFileType.POM_PROPS.filename)) {
-				try {
-					var bytes = in.readAllBytes();
-					onMavenFile.accept(new FileBuffer(entryPath, bytes));
-				} catch (IOException e) {
-					throw new UncheckedIOException(e);
-				}
-			}
-			if (filenameLower.endsWith(".class")) {
-				var timestamp = entry.getCreationTime();
-				if (timestamp == null) {
-					timestamp = entry.getLastModifiedTime();
+			// entry names are only converted to paths for the few files that are buffered, not for every class
+			var isMavenFile = hasFilename(name, PomFileType.POM_XML.filename) || hasFilename(name, PomFileType.POM_PROPS.filename);
+			var isManifest = hasFilename(name, "MANIFEST.MF") && Paths.get("META-INF/MANIFEST.MF").equals(Paths.get(name));
+			
+			if (isMavenFile || isManifest) {
+				// files we need to parse are buffered, all other entries are streamed into digester
+				byte[] bytes = source.readAllBytes(entry);
+				digester.update(entry, bytes);
+				
+				if (isMavenFile) {
+					onMavenFile.accept(new FileBuffer(Paths.get(name), bytes));
 				}
-				onClass.accept(new JarEntry(entryPath, timestamp));
-			}
-			if (Paths.get("META-INF/MANIFEST.MF").equals(entryPath)) {
-				try {
-					byte[] bytes = in.readAllBytes();
-					LOG.debug("Parsing manifest.");
-					
-					var string = new String(bytes, StandardCharsets.UTF_8);
+				if (isManifest) {
 					// JarInputStream is broken and does not always read manifest, so its still possible to find it here even if not just using ZipInputStream
-					var parsed = new Manifest(new ByteArrayInputStream(bytes));
-					manifest = Optional.of(new ManifestFile(string, parsed));
-				} catch (IOException e) {
-					throw new UncheckedIOException(e);
+					manifest = Optional.of(new ManifestFile(bytes));
 				}
+			} else {
+				digester.update(source, entry);
 			}
+			if (endsWithIgnoreCase(name, ".class")) {
+				// ZipEntry.getTime() avoids creating a FileTime for each class
+				var creationTime = entry.getCreationTime();
+				var timestamp = creationTime != null ? creationTime.toMillis() : entry.getTime();
+				onClass.accept(new JarEntry(name, timestamp));
+			}
+		} else {
+			digester.update(source, entry);
 		}
 		
 		return manifest;
 	}
 	
-	private Optional<ManifestFile> readJarStream(InputStream in, BiFunction<ZipEntry, InputStream, Optional<ManifestFile>> fileConsumer) {
-	    try (var jarIn = new ZipInputStream(in)) {
-	    	ManifestFile manifest = null;
-		    ZipEntry entry;
-			while ((entry = jarIn.getNextEntry()) != null) {
-				var currentManifest = fileConsumer.apply(entry, jarIn);
-				if (manifest == null && currentManifest.isPresent()) {
-					manifest = currentManifest.get();
-				}
-				jarIn.closeEntry();
-			}
-			return Optional.ofNullable(manifest);
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
-		}
+	/**
+	 * @return True if last name element of given zip entry name equals given filename, ignoring case.
+	 */
+	private static boolean hasFilename(String entryName, String filename) {
+		int start = entryName.length() - filename.length();
+		return endsWithIgnoreCase(entryName, filename) && (start == 0 || entryName.charAt(start - 1) == '/');
+	}
+	
+	private static boolean endsWithIgnoreCase(String value, String suffix) {
+		return value.regionMatches(true, value.length() - suffix.length(), suffix, 0, suffix.length());
 	}
+	
 }
@@ -0,0 +1,47 @@
+package de.eitco.mavenizer.analyze;
+
+import java.util.Set;
+
+import de.eitco.mavenizer.analyze.JarAnalyzer.AnalyzerInput;
+import de.eitco.mavenizer.analyze.JarAnalyzer.JarAnalyzerType;
+import de.eitco.mavenizer.analyze.JarAnalyzer.ValueCandidateCollector;
+
+/**
+ * Offline analyzer that finds Maven UID candidates for a single jar. Run by {@link JarAnalyzer} together with the built-in analyzers.
+ * <br>
+ * Additional analyzers can be registered with {@link java.util.ServiceLoader} by listing the implementing class in
+ * 'META-INF/services/de.eitco.mavenizer.analyze.JarContentAnalyzer'. They need a public no-arg constructor, must be thread-safe and should
+ * create their own {@link JarAnalyzerType}.
+ */
+public interface JarContentAnalyzer {
+
+	/**
+	 * Parts of a jar an analyzer reads. Analyzers are not run if one of their inputs does not exist in a jar.
+	 */
+	public enum Input {
+		JAR_FILENAME,
+		MANIFEST,
+		POM_FILES,
+		CLASS_FILES,
+		/** Candidates found by all other analyzers, analyzers with this input run last. */
+		CANDIDATES;
+	}
+
+	/**
+	 * Relative cost of an analyzer, cheaper analyzers run first. Expensive analyzers are skipped if candidates found by cheaper analyzers
+	 * already reach the certainty threshold.
+	 */
+	public enum Cost {
+		CHEAP,
+		MODERATE,
+		EXPENSIVE;
+	}
+
+	JarAnalyzerType getType();
+
+	Set<Input> getInputs();
+
+	Cost getCost();
+
+	void analyze(ValueCandidateCollector result, AnalyzerInput input);
+}
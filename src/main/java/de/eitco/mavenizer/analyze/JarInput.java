@@ -0,0 +1,74 @@
+package de.eitco.mavenizer.analyze;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+
+import de.eitco.mavenizer.JarSource;
+import de.eitco.mavenizer.NestedArchives;
+import de.eitco.mavenizer.NestedArchives.NestedJar;
+import de.eitco.mavenizer.analyze.FingerprintCache.CacheKey;
+
+/**
+ * Jar to be analyzed, either a jar file or a jar nested inside an archive file.
+ */
+public class JarInput {
+
+	public final String name;
+	/** Jar file or, if jar is nested, archive file containing the jar. */
+	public final Path file;
+	public final Optional<NestedJar> nested;
+
+	private JarInput(String name, Path file, Optional<NestedJar> nested) {
+		this.name = name;
+		this.file = file;
+		this.nested = nested;
+	}
+
+	public static JarInput of(Path jarFile) {
+		return new JarInput(jarFile.getFileName().toString(), jarFile, Optional.empty());
+	}
+
+	public static JarInput of(NestedJar nestedJar) {
+		return new JarInput(nestedJar.name, nestedJar.archive, Optional.of(nestedJar));
+	}
+
+	public JarSource open() {
+		return nested.isPresent() ? nested.get().open() : JarSource.open(file);
+	}
+
+	public long size() {
+		return nested.isPresent() ? nested.get().size : file.toFile().length();
+	}
+
+	/**
+	 * @return For nested jars, archive filename and path of jar inside archive, for example 'app.ear!/lib/foo.jar'.
+	 */
+	public Optional<String> nestedIn() {
+		return nested.map(jar -> file.getFileName() + NestedArchives.SEPARATOR + jar.nestedPath);
+	}
+
+	public CacheKey cacheKey() {
+		return CacheKey.of(file, nested.map(jar -> jar.nestedPath));
+	}
+
+	@Override
+	public String toString() {
+		return nested.isPresent() ? file.toString() + NestedArchives.SEPARATOR + nested.get().nestedPath : file.toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(file, nested.map(jar -> jar.nestedPath));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		JarInput other = (JarInput) obj;
+		return Objects.equals(file, other.file)
+				&& Objects.equals(nested.map(jar -> jar.nestedPath), other.nested.map(jar -> jar.nestedPath));
+	}
+}
@@ -0,0 +1,205 @@
+package de.eitco.mavenizer.analyze;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.eitco.mavenizer.FingerprintVersion;
+import de.eitco.mavenizer.HashingEngine;
+import de.eitco.mavenizer.Util.JarDigester;
+import de.eitco.mavenizer.analyze.Analyzer.Jar;
+import de.eitco.mavenizer.analyze.Analyzer.JarAnalysisResult;
+
+/**
+ * Runs hashing and offline analysis of jars on a pool of worker threads.
+ */
+public class OfflineAnalyzer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(OfflineAnalyzer.class);
+
+	// hashing engine stats are logged periodically to see if allocations stay flat during long runs
+	private static final int STATS_INTERVAL_JARS = 1000;
+
+	public static class JarOfflineResult {
+		public final Jar jar;
+		public final JarAnalysisResult analysis;
+
+		public JarOfflineResult(Jar jar, JarAnalysisResult analysis) {
+			this.jar = jar;
+			this.analysis = analysis;
+		}
+	}
+
+	private final JarAnalyzer jarAnalyzer;
+	private final FingerprintVersion fingerprintVersion;
+	private final int certaintyThreshold;
+	private final Optional<FingerprintCache> cache;
+	private final int workerCount;
+	private final ExecutorService workers;
+	private final ExecutorService dispatcher;
+	private final AtomicInteger cacheHits = new AtomicInteger(0);
+	private final AtomicInteger hashedJars = new AtomicInteger(0);
+	private final Map<JarInput, CompletableFuture<JarOfflineResult>> startedEarly = new ConcurrentHashMap<>();
+
+	public OfflineAnalyzer(int workerCount, FingerprintVersion fingerprintVersion, int certaintyThreshold, Optional<FingerprintCache> cache) {
+		this.jarAnalyzer = new JarAnalyzer(certaintyThreshold);
+		this.fingerprintVersion = fingerprintVersion;
+		this.certaintyThreshold = certaintyThreshold;
+		this.cache = cache;
+		this.workerCount = workerCount;
+
+		var threadCounter = new AtomicInteger(1);
+		this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+			var thread = new Thread(runnable, "offline-worker-" + threadCounter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+			var thread = new Thread(runnable, "offline-dispatcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts offline analysis of a single jar while the full list of jars is not known yet (for example while folders are still being walked).
+	 * Result will be picked up by {@link #analyze(List)} if the list passed to it contains this jar.
+	 */
+	public void startEarly(JarInput jar) {
+		startedEarly.computeIfAbsent(jar, key -> CompletableFuture.supplyAsync(() -> analyzeJar(key), workers));
+	}
+
+	/**
+	 * Starts offline analysis for all given jars that have not been started early. Largest jars are scheduled first, so that a single big jar
+	 * does not end up running alone on one worker after all other jars have been analyzed.
+	 * @return One future per jar, in the same order as the given jars.
+	 */
+	public List<CompletableFuture<JarOfflineResult>> analyze(List<JarInput> jars) {
+		var results = new ArrayList<CompletableFuture<JarOfflineResult>>(jars.size());
+		for (var input : jars) {
+			results.add(startedEarly.remove(input));
+		}
+
+		var notStarted = IntStream.range(0, jars.size())
+				.filter(index -> results.get(index) == null)
+				.boxed()
+				.collect(Collectors.toList());
+		var fileSizes = notStarted.stream()
+				.collect(Collectors.toMap(index -> index, index -> jars.get(index).size()));
+
+		var largestFirst = notStarted.stream()
+				.sorted(Comparator.comparing(fileSizes::get).reversed())
+				.collect(Collectors.toList());
+
+		for (int index : largestFirst) {
+			var input = jars.get(index);
+			results.set(index, CompletableFuture.supplyAsync(() -> analyzeJar(input), workers));
+		}
+		return results;
+	}
+
+	/**
+	 * Starts offline analysis for the given jars in their original order, but only while a permit for the next jar can be acquired.
+	 * Callers must release one permit for each jar whose result they are done with, which limits the number of jars whose
+	 * analysis state is held in memory at the same time.
+	 * <br>
+	 * Completed futures hold the analysis state of their jar, so this analyzer does not reference a future anymore once its jar was started,
+	 * and callers must not keep the returned list after they have chained their processing to the futures.
+	 * @return One future per jar, in the same order as the given jars.
+	 */
+	public List<CompletableFuture<JarOfflineResult>> analyzeBounded(List<JarInput> jars, Semaphore jarsInFlight) {
+		var results = new ArrayList<CompletableFuture<JarOfflineResult>>(jars.size());
+		for (int i = 0; i < jars.size(); i++) {
+			results.add(new CompletableFuture<>());
+		}
+		var notStarted = new ArrayList<>(results);
+		dispatcher.execute(() -> {
+			for (int i = 0; i < jars.size(); i++) {
+				var input = jars.get(i);
+				var result = notStarted.set(i, null);
+				try {
+					jarsInFlight.acquire();
+				} catch (InterruptedException e) {
+					// analyzer was shut down, so that remaining jars will never be analyzed
+					result.cancel(false);
+					notStarted.stream().filter(Objects::nonNull).forEach(future -> future.cancel(false));
+					return;
+				}
+				workers.execute(() -> {
+					try {
+						result.complete(analyzeJar(input));
+					} catch (Throwable e) {
+						// errors like OutOfMemoryError must complete the future as well, otherwise callers wait forever
+						result.completeExceptionally(e);
+					}
+				});
+			}
+		});
+		return results;
+	}
+
+	public void shutdown() {
+		dispatcher.shutdownNow();
+		workers.shutdown();
+	}
+
+	/**
+	 * @return Number of jars whose results were taken from fingerprint cache so far.
+	 */
+	public int getCacheHits() {
+		return cacheHits.get();
+	}
+
+	private JarOfflineResult analyzeJar(JarInput input) {
+		String jarName = input.name;
+		String absoluteDir = input.file.toAbsolutePath().normalize().getParent().toString();
+		var nestedIn = input.nestedIn();
+
+		var cacheKey = cache.map(unused -> input.cacheKey());
+		if (cacheKey.isPresent()) {
+			var cached = cache.get().get(cacheKey.get(), input::open)
+					.filter(result -> result.hashes.fingerprintVersion == fingerprintVersion && result.certaintyThreshold == certaintyThreshold);
+			if (cached.isPresent()) {
+				LOG.debug("Using cached analysis for Jar: '" + input.toString() + "'");
+				cacheHits.incrementAndGet();
+				return new JarOfflineResult(new Jar(jarName, absoluteDir, nestedIn, cached.get().hashes), cached.get().analysis);
+			}
+		}
+
+		LOG.debug("Analyzing Jar: '" + input.toString() + "'");
+
+		// We hash uncompressed bytes so we know if the jar content is identical independent from jar compression level/method.
+		try (var source = input.open()) {
+			
+			// with fingerprint version 2, entries of big jars are hashed with help of idle workers
+			// with fingerprint version 1, class hashes are only computed if online analysis needs them
+			var digester = new JarDigester(fingerprintVersion, input::open, workers, workerCount - 1);
+			var content = jarAnalyzer.readJar(source, digester);
+			Jar jar = new Jar(jarName, absoluteDir, nestedIn, content.hashes);
+			
+			var jarAnalysisResult = jarAnalyzer.analyzeOffline(jar, content);
+			if (cacheKey.isPresent()) {
+				cache.get().put(cacheKey.get(), content.hashes, jarAnalysisResult, certaintyThreshold);
+			}
+			int hashed = hashedJars.incrementAndGet();
+			if (hashed % STATS_INTERVAL_JARS == 0) {
+				LOG.debug("Hashing engine after " + hashed + " jars: " + HashingEngine.stats());
+			}
+			return new JarOfflineResult(jar, jarAnalysisResult);
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package de.eitco.mavenizer.analyze;
 
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -17,13 +17,14 @@ import org.slf4j.LoggerFactory;
 import de.eitco.mavenizer.MavenRemoteService;
 import de.eitco.mavenizer.MavenUid;
 import de.eitco.mavenizer.MavenUid.MavenUidComponent;
+import de.eitco.mavenizer.RemoteLookupCache;
 import de.eitco.mavenizer.Util;
+import de.eitco.mavenizer.MavenRemoteService.JarUnavailableException;
 import de.eitco.mavenizer.MavenRemoteService.OnlineJarResult;
 import de.eitco.mavenizer.analyze.Analyzer.JarHashes;
 
 public class OnlineAnalyzer {
 
-	@SuppressWarnings("unused")
 	private static final Logger LOG = LoggerFactory.getLogger(OnlineAnalyzer.class);
 	
 	public static class UidCheck {
@@ -60,9 +61,16 @@ public class OnlineAnalyzer {
 			);
 	
 	private final MavenRemoteService mavenRemotes;
+	private final OnlineRequestPlanner planner;
+	private final int maxParallelChecks;
 	
-	public OnlineAnalyzer(Optional<List<String>> customRemoteRepos) {
-		mavenRemotes = new MavenRemoteService(customRemoteRepos);
+	/**
+	 * @param maxParallelChecks Maximum number of candidate UIDs of a single jar that are downloaded and compared at the same time.
+	 */
+	public OnlineAnalyzer(Optional<List<String>> customRemoteRepos, Optional<RemoteLookupCache> lookupCache, int maxParallelChecks) {
+		this.mavenRemotes = new MavenRemoteService(customRemoteRepos, lookupCache);
+		this.planner = new OnlineRequestPlanner(mavenRemotes);
+		this.maxParallelChecks = maxParallelChecks;
 	}
 	
 	List<String> getRemoteRepos() {
@@ -72,6 +80,36 @@ public class OnlineAnalyzer {
 	public void shutdown() {
 		mavenRemotes.shutdown();
 	}
+	
+	/**
+	 * Registers the candidates of a jar that will be checked, so that remote requests needed by many jars (or with high scores) are issued
+	 * before others once {@link #startRequests()} is called. Requests shared by multiple jars are only issued once in any case.
+	 * @param toCheck Candidates as returned by {@link #selectCandidatesToCheck(Map)}.
+	 * @param toSearchVersions UIDs without version whose versions will be searched.
+	 */
+	public void planChecks(Map<MavenUid, Map<MavenUidComponent, Integer>> toCheck, Set<MavenUid> toSearchVersions) {
+		var plannedSearches = new HashSet<MavenUid>();
+		for (var entry : toCheck.entrySet()) {
+			var uid = entry.getKey();
+			var scores = entry.getValue();
+			int score = scores.get(MavenUidComponent.GROUP_ID) + scores.get(MavenUidComponent.ARTIFACT_ID);
+			if (uid.version != null) {
+				planner.addJarDemand(uid, score + scores.get(MavenUidComponent.VERSION));
+			}
+			var uidWithoutVersion = new MavenUid(uid.groupId, uid.artifactId, null);
+			if (toSearchVersions.contains(uidWithoutVersion) && plannedSearches.add(uidWithoutVersion)) {
+				planner.addVersionsDemand(uidWithoutVersion, score);
+			}
+		}
+	}
+	
+	/**
+	 * Starts remote requests of all checks started so far (ordered by how many jars need them) once remote service is initialized.
+	 * Checks started afterwards issue their requests right away.
+	 */
+	public void startRequests() {
+		planner.start();
+	}
 
 	/**
 	 * @return Map of candidate UIDs that should be checked online, with the summed scores of each UID component.
@@ -112,59 +150,144 @@ public class OnlineAnalyzer {
 		return result;
 	}
 	
+	/**
+	 * Downloads and compares candidates in given order, with up to {@link #maxParallelChecks} candidates at the same time.
+	 * If an exact match is found, only that match is returned and downloads of candidates after it are not started or cancelled.
+	 * Result is the same as if candidates were checked one after another.
+	 */
 	public CompletableFuture<Set<UidCheck>> findJars(JarHashes localHashes, Set<MavenUid> uidCandidates) {
-		return CompletableFuture.supplyAsync(() -> {
-			
-			Set<UidCheck> results = new LinkedHashSet<>();
-			for (var uid : uidCandidates) {
-				CompletableFuture<Optional<OnlineJarResult>> onlineJarFuture = mavenRemotes.downloadJar(uid, false);
-				
-				CompletableFuture<UidCheck> checkedFuture = onlineJarFuture.thenApplyAsync(onlineJarResult -> {
-					if (onlineJarResult.isPresent()) {
-						OnlineJarResult onlineJar = onlineJarResult.get();
-						var url = Optional.of(onlineJar.url);
-						if (localHashes.jarSha256.equals(onlineJar.hashes.jarSha256)) {
-							return new UidCheck(uid, OnlineMatch.FOUND_MATCH_EXACT_SHA, url);
-						} else if (classHashesMatch(localHashes, onlineJar.hashes)) {
-							return new UidCheck(uid, OnlineMatch.FOUND_MATCH_EXACT_CLASSES_SHA, url);
-						} else {
-							return new UidCheck(uid, OnlineMatch.FOUND_NO_MATCH, url);
-						}
+		return new CandidateChecks(localHashes, List.copyOf(uidCandidates)).start();
+	}
+	
+	/**
+	 * Checks of all candidates of a single jar. Candidates are started in order whenever one of the running checks completes.
+	 */
+	private class CandidateChecks {
+		
+		private final JarHashes localHashes;
+		private final List<MavenUid> uids;
+		private final UidCheck[] checks;
+		private final Throwable[] errors;
+		private final CompletableFuture<Set<UidCheck>> result = new CompletableFuture<>();
+		
+		// guarded by this
+		private int nextToStart = 0;
+		private int running = 0;
+		private int stop;// index of first candidate that matched exactly or failed, candidates after it are not needed
+		
+		CandidateChecks(JarHashes localHashes, List<MavenUid> uids) {
+			this.localHashes = localHashes;
+			this.uids = uids;
+			this.checks = new UidCheck[uids.size()];
+			this.errors = new Throwable[uids.size()];
+			this.stop = uids.size();
+		}
+		
+		CompletableFuture<Set<UidCheck>> start() {
+			synchronized (this) {
+				startNext();
+				completeIfDone();
+			}
+			return result;
+		}
+		
+		private void startNext() {
+			while (running < maxParallelChecks && nextToStart < stop) {
+				int index = nextToStart++;
+				running++;
+				var uid = uids.get(index);
+				planner.downloadJar(uid)
+						.thenApplyAsync(onlineJarResult -> check(uid, onlineJarResult))
+						.whenComplete((check, error) -> onChecked(index, check, error));
+			}
+		}
+		
+		private synchronized void onChecked(int index, UidCheck check, Throwable error) {
+			running--;
+			if (result.isDone() || index > stop) {
+				return;// not needed anymore
+			}
+			checks[index] = check;
+			errors[index] = error;
+			if (error != null || check.matchType.equals(OnlineMatch.FOUND_MATCH_EXACT_SHA)) {
+				// if we find exact match, we don't need candidates after it, but candidates before it might match exactly as well
+				// (cancelled checks call this method again right away, so they must already be marked as not needed)
+				int previousStop = stop;
+				stop = index;
+				for (int i = index + 1; i < Math.min(nextToStart, previousStop); i++) {
+					if (checks[i] == null && errors[i] == null) {
+						planner.releaseJar(uids.get(i));
+					}
+				}
+			}
+			startNext();
+			completeIfDone();
+		}
+		
+		private void completeIfDone() {
+			for (int i = 0; i < stop; i++) {
+				if (checks[i] == null) {
+					return;
+				}
+			}
+			if (stop == checks.length) {
+				result.complete(new LinkedHashSet<>(List.of(checks)));
+			} else if (errors[stop] != null) {
+				result.completeExceptionally(errors[stop]);
+			} else {
+				// we throw away all other results
+				LOG.debug("Found exact match " + uids.get(stop) + ", skipped checks of " + (checks.length - stop - 1) + " other candidates.");
+				result.complete(Set.of(checks[stop]));
+			}
+		}
+		
+		private UidCheck check(MavenUid uid, Optional<OnlineJarResult> onlineJarResult) {
+			if (onlineJarResult.isPresent()) {
+				OnlineJarResult onlineJar = onlineJarResult.get();
+				var url = Optional.of(onlineJar.url);
+				// checksums from zip central directory are compared first, so that downloaded jars are only hashed if they might match
+				// online jar is hashed with same fingerprint version as local jar, otherwise jar hashes are not comparable
+				var version = localHashes.fingerprintVersion;
+				try {
+					if (localHashes.checksums.mayHaveSameJarHash(onlineJar.checksums, version)
+							&& localHashes.jarSha256.equals(onlineJar.getHashes(version).jarSha256)) {
+						return new UidCheck(uid, OnlineMatch.FOUND_MATCH_EXACT_SHA, url);
+					} else if (localHashes.checksums.mayHaveSameClassHashes(onlineJar.checksums)
+							&& classHashesMatch(localHashes, onlineJar.getHashes(version))) {
+						return new UidCheck(uid, OnlineMatch.FOUND_MATCH_EXACT_CLASSES_SHA, url);
 					} else {
-						return new UidCheck(uid, OnlineMatch.NOT_FOUND, Optional.empty());
+						return new UidCheck(uid, OnlineMatch.FOUND_NO_MATCH, url);
 					}
-				});
-				
-				// we serialize the checks for each call with join here to prevent unnecessary downloads, but multiple calls to this function can still run in parallel
-				var check = checkedFuture.join();
-				if (check.matchType.equals(OnlineMatch.FOUND_MATCH_EXACT_SHA)) {
-					// if we find exact match, we don't continue searching and throw away all previous results
-					return Set.of(check);
-				} else {
-					results.add(check);
+				} catch (JarUnavailableException e) {
+					// cached lookup result cannot be verified anymore
+					return new UidCheck(uid, OnlineMatch.NOT_FOUND, Optional.empty());
 				}
+			} else {
+				return new UidCheck(uid, OnlineMatch.NOT_FOUND, Optional.empty());
 			}
-			return results;
-			
-		});
+		}
 	}
 	
 	public CompletableFuture<Map<MavenUid, Set<UidCheck>>> searchVersionsAndFindJars(JarHashes localHashes, Set<MavenUid> uidCandidates) {
 		
-		return mavenRemotes.fullyInitialized().thenApplyAsync(__ -> {
+		var searches = new LinkedHashMap<MavenUid, CompletableFuture<Set<UidCheck>>>();
+		for (var uid : uidCandidates) {
+			if (uid.groupId == null || uid.artifactId == null || uid.version != null) {
+				throw new IllegalArgumentException();
+			}
+			// versions of each UID are only searched once for all jars, results are empty if no versions were found
+			searches.put(uid, planner.downloadVersions(uid).thenCompose(versions -> versions.isEmpty()
+					? CompletableFuture.completedFuture(Set.<UidCheck>of())
+					: findJars(localHashes, selectVersionCandidates(uid, versions))));
+		}
+		return CompletableFuture.allOf(searches.values().toArray(CompletableFuture[]::new)).thenApply(__ -> {
 			var result = new HashMap<MavenUid, Set<UidCheck>>();
-			
-			for (var uid : uidCandidates) {
-				if (uid.groupId == null || uid.artifactId == null || uid.version != null) {
-					throw new IllegalArgumentException();
-				}
-				var versions = mavenRemotes.downloadVersionsBlocking(uid);
-				if (!versions.isEmpty()) {
-					var selectedVersions = selectVersionCandidates(uid, versions);
-					var fullUidResults = Util.run(() -> findJars(localHashes, selectedVersions).get());
+			searches.forEach((uid, search) -> {
+				var fullUidResults = search.join();
+				if (!fullUidResults.isEmpty()) {
 					result.put(uid, fullUidResults);
 				}
-			}
+			});
 			return result;
 		});
 	}
@@ -187,17 +310,6 @@ public class OnlineAnalyzer {
 	}
 	
 	private boolean classHashesMatch(JarHashes localHashes, JarHashes onlineHashes) {
-		if (localHashes.classesToSha256.size() != onlineHashes.classesToSha256.size()) {
-			return false;
-		}
-		for (var localClassEntry : localHashes.classesToSha256.entrySet()) {
-			var classPath = localClassEntry.getKey();
-			var localClassHash = localClassEntry.getValue();
-			var onlineClassHash = onlineHashes.classesToSha256.get(classPath);
-			if (!Arrays.equals(localClassHash, onlineClassHash)) {
-				return false;
-			}
-		}
-		return true;
+		return localHashes.getClassHashes().equals(onlineHashes.getClassHashes());
 	}
 }
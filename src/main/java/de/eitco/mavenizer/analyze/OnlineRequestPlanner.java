@@ -0,0 +1,183 @@
+package de.eitco.mavenizer.analyze;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.eitco.mavenizer.MavenRemoteService;
+import de.eitco.mavenizer.MavenRemoteService.OnlineJarResult;
+import de.eitco.mavenizer.MavenUid;
+
+/**
+ * Deduplicates remote requests (jar downloads and version lookups) of all jars and issues each request only once.
+ * <br>
+ * Jars first register which UIDs they might need and with which score ({@link #addJarDemand(MavenUid, int)},
+ * {@link #addVersionsDemand(MavenUid, int)}). Requests are held back until {@link #start()} is called and the remote service is initialized,
+ * then all requests that are waited for are issued at once, the ones needed by most jars (and with highest score) first.
+ * Requests made after that are issued right away. Results are shared by all jars waiting for the same request.
+ */
+final class OnlineRequestPlanner {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(OnlineRequestPlanner.class);
+	
+	private static final Comparator<Request<?>> PRIORITY = Comparator.<Request<?>>comparingInt(request -> request.jars)
+			.thenComparingInt(request -> request.score)
+			.reversed();
+	
+	private static class Request<T> {
+		final MavenUid uid;
+		final Supplier<CompletableFuture<T>> issue;
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		
+		// guarded by planner
+		int jars = 0;// number of jars that registered demand
+		int score = 0;// summed score of all jars that registered demand
+		int waiting = 0;// number of callers currently waiting for result
+		boolean issued = false;
+		
+		Request(MavenUid uid, Supplier<CompletableFuture<T>> issue) {
+			this.uid = uid;
+			this.issue = issue;
+		}
+		
+		void issue() {
+			issue.get().whenComplete((value, error) -> {
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					result.complete(value);
+				}
+			});
+		}
+	}
+	
+	private final MavenRemoteService mavenRemotes;
+	
+	// guarded by this
+	private final Map<MavenUid, Request<Optional<OnlineJarResult>>> jarRequests = new HashMap<>();
+	private final Map<MavenUid, Request<List<String>>> versionRequests = new HashMap<>();
+	private boolean started = false;
+	
+	OnlineRequestPlanner(MavenRemoteService mavenRemotes) {
+		this.mavenRemotes = mavenRemotes;
+	}
+	
+	/**
+	 * Registers that a jar might need the jar with given UID.
+	 */
+	synchronized void addJarDemand(MavenUid uid, int score) {
+		var request = jarRequest(uid);
+		request.jars++;
+		request.score += score;
+	}
+	
+	/**
+	 * Registers that a jar might need the versions of given UID (which must not have a version).
+	 */
+	synchronized void addVersionsDemand(MavenUid uid, int score) {
+		var request = versionsRequest(uid);
+		request.jars++;
+		request.score += score;
+	}
+	
+	/**
+	 * Issues all requests that are waited for once remote service is initialized, and all future requests right away.
+	 */
+	void start() {
+		mavenRemotes.fullyInitialized().thenRun(() -> {
+			var toIssue = new ArrayList<Request<?>>();
+			synchronized (this) {
+				started = true;
+				for (var request : jarRequests.values()) {
+					if (!request.issued && request.waiting > 0) {
+						toIssue.add(request);
+					}
+				}
+				for (var request : versionRequests.values()) {
+					if (!request.issued && request.waiting > 0) {
+						toIssue.add(request);
+					}
+				}
+				toIssue.sort(PRIORITY);
+				for (var request : toIssue) {
+					request.issued = true;
+				}
+				LOG.debug("Issuing " + toIssue.size() + " planned remote requests, " + jarRequests.size() + " jar and " + versionRequests.size() + " version UIDs were planned.");
+			}
+			for (var request : toIssue) {
+				request.issue();
+			}
+		});
+	}
+	
+	CompletableFuture<Optional<OnlineJarResult>> downloadJar(MavenUid uid) {
+		Request<Optional<OnlineJarResult>> request;
+		synchronized (this) {
+			request = jarRequest(uid);
+			if (!waitFor(request)) {
+				return request.result;
+			}
+		}
+		request.issue();
+		return request.result;
+	}
+	
+	CompletableFuture<List<String>> downloadVersions(MavenUid uid) {
+		Request<List<String>> request;
+		synchronized (this) {
+			request = versionsRequest(uid);
+			if (!waitFor(request)) {
+				return request.result;
+			}
+		}
+		request.issue();
+		return request.result;
+	}
+	
+	/**
+	 * Tells planner that a caller of {@link #downloadJar(MavenUid)} does not need the result anymore. If nobody else waits for it,
+	 * request is dropped if it was not issued yet, or cancelled by remote service if download did not start yet.
+	 */
+	synchronized void releaseJar(MavenUid uid) {
+		// lock is held while cancelling, so that no other caller can start waiting for a request that is about to be cancelled
+		// (only the releasing caller waits for a cancelled result, so no other callers are notified while lock is held)
+		var request = jarRequests.get(uid);
+		if (request == null || request.result.isDone() || --request.waiting > 0) {
+			return;
+		}
+		if (!request.issued) {
+			jarRequests.remove(uid);
+			request.result.cancel(false);
+		} else if (mavenRemotes.releaseJar(uid)) {
+			jarRequests.remove(uid);
+		}
+	}
+	
+	/**
+	 * @return True if request must be issued by caller (outside of lock).
+	 */
+	private boolean waitFor(Request<?> request) {
+		request.waiting++;
+		if (started && !request.issued) {
+			request.issued = true;
+			return true;
+		}
+		return false;
+	}
+	
+	private Request<Optional<OnlineJarResult>> jarRequest(MavenUid uid) {
+		return jarRequests.computeIfAbsent(uid, key -> new Request<>(key, () -> mavenRemotes.downloadJar(key, false)));
+	}
+	
+	private Request<List<String>> versionsRequest(MavenUid uid) {
+		return versionRequests.computeIfAbsent(uid, key -> new Request<>(key, () -> mavenRemotes.downloadVersions(key)));
+	}
+}
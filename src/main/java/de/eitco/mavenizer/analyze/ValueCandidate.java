@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Supplier;
 
 import de.eitco.mavenizer.analyze.JarAnalyzer.JarAnalyzerType;
 
@@ -12,13 +13,29 @@ public class ValueCandidate {
 	public static class ValueSource {
 		public final JarAnalyzerType analyzer;
 		public final int score;
-		public final String details;
+		private String details;
+		private Supplier<String> detailsSupplier;
 		
 		public ValueSource(JarAnalyzerType analyzer, int score, String details) {
 			this.analyzer = analyzer;
 			this.score = score;
 			this.details = details;
 		}
+		/**
+		 * @param detailsSupplier Creates details on first call to {@link #getDetails()}.
+		 */
+		public ValueSource(JarAnalyzerType analyzer, int score, Supplier<String> detailsSupplier) {
+			this.analyzer = analyzer;
+			this.score = score;
+			this.detailsSupplier = detailsSupplier;
+		}
+		public synchronized String getDetails() {
+			if (detailsSupplier != null) {
+				details = detailsSupplier.get();
+				detailsSupplier = null;
+			}
+			return details;
+		}
 	}
 	
 	public final String value;
@@ -1,61 +1,68 @@
 package de.eitco.mavenizer.analyze.jar;
 
 import java.time.LocalDate;
-import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Set;
 
 import de.eitco.mavenizer.MavenUid.MavenUidComponent;
 import de.eitco.mavenizer.StringUtil;
+import de.eitco.mavenizer.analyze.JarAnalyzer.AnalyzerInput;
 import de.eitco.mavenizer.analyze.JarAnalyzer.JarAnalyzerType;
 import de.eitco.mavenizer.analyze.JarAnalyzer.JarEntry;
 import de.eitco.mavenizer.analyze.JarAnalyzer.ValueCandidateCollector;
+import de.eitco.mavenizer.analyze.JarContentAnalyzer;
 
-public class ClassTimestampAnalyzer {
+public class ClassTimestampAnalyzer implements JarContentAnalyzer {
 	
 	public static final DateTimeFormatter dateToVersion = DateTimeFormatter.ofPattern("yyyy.MM.dd");
 	public static final DateTimeFormatter datePrinter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 	
 	public void analyze(ValueCandidateCollector result, List<JarEntry> classes) {
 		
-		var datesToOccurence = new HashMap<LocalDate, Integer>();
-		var total = 0;
+		var datesToOccurence = new EpochDayHistogram();
 		
 		for (var entry : classes) {
-			if (entry.timestamp != null) {
-				var instant = entry.timestamp.toInstant();
-				var dateUtc = LocalDate.ofInstant(instant, ZoneOffset.UTC);
-				var count = datesToOccurence.getOrDefault(dateUtc, 0);
-				datesToOccurence.put(dateUtc, count + 1);
-				total++;
+			if (entry.timestamp != JarEntry.NO_TIMESTAMP) {
+				datesToOccurence.addMillis(entry.timestamp);
 			}
 		}
 		
-		var highestCountEntry = 
-				datesToOccurence.entrySet().stream()
-			    .sorted(Entry.<LocalDate, Integer>comparingByValue().reversed())
-			    .findFirst();
-		
-		if (highestCountEntry.isPresent()) {
-			var date = highestCountEntry.get().getKey();
-			var count = highestCountEntry.get().getValue();
+		if (datesToOccurence.maxCount() > 0) {
+			var date = LocalDate.ofEpochDay(datesToOccurence.maxDay());
+			var count = datesToOccurence.maxCount();
 			
 			if (count > 1) {
 				var version = date.format(dateToVersion);
-				int countRatio = (count * 100) / total;
-				var countRatioPercent = StringUtil.leftPad(countRatio + "", 3);
-				var details = countRatioPercent + "% of classes have created/modified date: " + date.format(datePrinter);
+				int countRatio = (count * 100) / datesToOccurence.total();
 				
-				result.addCandidate(MavenUidComponent.VERSION, version, (countRatio > 60 ? 1 : 0), details);
+				result.addCandidate(MavenUidComponent.VERSION, version, (countRatio > 60 ? 1 : 0), () -> {
+					var countRatioPercent = StringUtil.leftPad(countRatio + "", 3);
+					return countRatioPercent + "% of classes have created/modified date: " + date.format(datePrinter);
+				});
 			}
 
 		}
 		
 	}
 	
+	@Override
 	public JarAnalyzerType getType() {
 		return JarAnalyzerType.CLASS_TIMESTAMP;
 	}
+	
+	@Override
+	public Set<Input> getInputs() {
+		return Set.of(Input.CLASS_FILES);
+	}
+	
+	@Override
+	public Cost getCost() {
+		return Cost.EXPENSIVE;
+	}
+	
+	@Override
+	public void analyze(ValueCandidateCollector result, AnalyzerInput input) {
+		analyze(result, input.content.classFiles);
+	}
 }
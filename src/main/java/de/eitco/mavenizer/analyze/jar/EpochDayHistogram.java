@@ -0,0 +1,99 @@
+package de.eitco.mavenizer.analyze.jar;
+
+import java.util.Arrays;
+
+/**
+ * Counts occurrences of days (UTC) without boxing. Days are keys of an open addressing hash table with linear probing, which stays
+ * small because classes of a jar are usually compiled on very few different days.
+ * <br>
+ * The day with the highest count is tracked while counting. If multiple days have the highest count, the day that reached it first wins.
+ */
+final class EpochDayHistogram {
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] days = newTable(16);
+	private int[] counts = new int[16];
+	private int size = 0;
+	private int total = 0;
+
+	private long maxDay = EMPTY;
+	private int maxCount = 0;
+
+	private static long[] newTable(int capacity) {
+		var table = new long[capacity];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
+	/**
+	 * Counts the UTC day of the given time.
+	 * @param epochMillis Milliseconds since 1970-01-01T00:00:00Z.
+	 */
+	void addMillis(long epochMillis) {
+		addDay(Math.floorDiv(epochMillis, MILLIS_PER_DAY));
+	}
+
+	void addDay(long epochDay) {
+		int slot = slot(days, epochDay);
+		if (days[slot] == EMPTY) {
+			if ((size + 1) * 2 > days.length) {
+				resize();
+				slot = slot(days, epochDay);
+			}
+			days[slot] = epochDay;
+			size++;
+		}
+		int count = ++counts[slot];
+		total++;
+		if (count > maxCount) {
+			maxCount = count;
+			maxDay = epochDay;
+		}
+	}
+
+	private static int slot(long[] table, long epochDay) {
+		int mask = table.length - 1;
+		int slot = Long.hashCode(epochDay * 0x9E3779B97F4A7C15L) & mask;
+		while (table[slot] != EMPTY && table[slot] != epochDay) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void resize() {
+		var oldDays = days;
+		var oldCounts = counts;
+		days = newTable(oldDays.length * 2);
+		counts = new int[oldDays.length * 2];
+		for (int i = 0; i < oldDays.length; i++) {
+			if (oldDays[i] != EMPTY) {
+				int slot = slot(days, oldDays[i]);
+				days[slot] = oldDays[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+	/**
+	 * @return Total number of counted days.
+	 */
+	int total() {
+		return total;
+	}
+
+	/**
+	 * @return Highest count of a single day, 0 if nothing was counted.
+	 */
+	int maxCount() {
+		return maxCount;
+	}
+
+	/**
+	 * @return Day since 1970-01-01 with highest count, only valid if {@link #maxCount()} is not 0.
+	 */
+	long maxDay() {
+		return maxDay;
+	}
+}
@@ -77,6 +77,299 @@ public class Helper {
 		}
 	}
 
+	/**
+	 * Hand-written equivalents of the patterns in {@link Regex}, which are kept as reference. Methods return offsets of capture groups instead
+	 * of allocating a {@link java.util.regex.Matcher} for each value, and never backtrack more than a few positions.
+	 * <br>
+	 * Same as the patterns, a single line terminator at the end of a value is allowed and is not part of any group (see {@link #end(String)}).
+	 */
+	public static class Scan {
+		private Scan() {}
+		
+		/**
+		 * @return End of {@link Regex#CAP_GROUP_PACKAGE} group (which always starts at 0) of {@link Regex#packageWithOptionalClass}, -1 if value does not match.
+		 */
+		public static int packageWithOptionalClass(String value) {
+			return packageEnd(value, 1);
+		}
+		
+		/**
+		 * @return End of {@link Regex#CAP_GROUP_PACKAGE} group (which always starts at 0) of {@link Regex#packageStrictWithOptionalClass}, -1 if value does not match.
+		 */
+		public static int packageStrictWithOptionalClass(String value) {
+			return packageEnd(value, 2);
+		}
+		
+		/**
+		 * @return End of {@link Regex#CAP_GROUP_ARTIFACT_ID} group (which always starts at 0) of {@link Regex#artifactId}, -1 if value does not match.
+		 */
+		public static int artifactId(String value) {
+			int end = end(value);
+			if (end == 0 || !isSubpackageStart(value.charAt(0))) {
+				return -1;
+			}
+			for (int i = 1; i < end; i++) {
+				char c = value.charAt(i);
+				if (!isSubpackagePart(c) && c != '-') {
+					return -1;
+				}
+			}
+			return end;
+		}
+		
+		/**
+		 * @return End of {@link Regex#CAP_GROUP_ARTIFACT_ID} group (which always starts at 0) of {@link Regex#artifactIdLike}, -1 if value does not match.
+		 */
+		public static int artifactIdLike(String value) {
+			int end = end(value);
+			return isArtifactIdLike(value, 0, end) ? end : -1;
+		}
+		
+		/**
+		 * @return Start of {@link Regex#CAP_GROUP_ARTIFACT_ID} group (which always ends at {@link #end(String)}) of
+		 *   {@link Regex#optionalPackageWithArtifactIdLikeAsLeaf}, -1 if value does not match.
+		 */
+		public static int optionalPackageWithArtifactIdLikeAsLeaf(String value) {
+			int end = end(value);
+			// package takes as many subpackages as possible
+			int packageEnd = 0;
+			while (true) {
+				int subpackageEnd = subpackageEnd(value, packageEnd, end);
+				if (subpackageEnd == packageEnd || subpackageEnd == end || value.charAt(subpackageEnd) != '.') {
+					break;
+				}
+				packageEnd = subpackageEnd + 1;
+			}
+			// and gives back subpackages until rest is artifactId-like
+			while (!isArtifactIdLike(value, packageEnd, end)) {
+				if (packageEnd == 0) {
+					return -1;
+				}
+				packageEnd = value.lastIndexOf('.', packageEnd - 2) + 1;
+			}
+			return packageEnd;
+		}
+		
+		/**
+		 * @return End of {@link Regex#CAP_GROUP_VERSION} group (which always starts at 0) of {@link Regex#versionWidthOptionalClassifiers}, -1 if value does not match.
+		 */
+		public static int versionWithOptionalClassifiers(String value) {
+			return versionWithOptionalClassifiers(value, 0);
+		}
+		
+		/**
+		 * Same as {@link #versionWithOptionalClassifiers(String)}, but value is matched starting at given index instead of 0.
+		 */
+		public static int versionWithOptionalClassifiers(String value, int start) {
+			int end = end(value);
+			int digitsEnd = digitsEnd(value, start, end);
+			if (digitsEnd == start) {
+				return -1;
+			}
+			// numeric parts take as many parts as possible
+			int partsEnd = digitsEnd;
+			while (partsEnd < end && value.charAt(partsEnd) == '.') {
+				int partEnd = digitsEnd(value, partsEnd + 1, end);
+				if (partEnd == partsEnd + 1) {
+					break;
+				}
+				partsEnd = partEnd;
+			}
+			// and give back parts until optional uppercase suffix and classifiers match the rest
+			while (true) {
+				if (partsEnd < end && (value.charAt(partsEnd) == '.' || value.charAt(partsEnd) == '-')) {
+					int suffixEnd = upperCaseEnd(value, partsEnd + 1, end);
+					if (suffixEnd > partsEnd + 1 && isClassifiers(value, suffixEnd, end)) {
+						return suffixEnd;
+					}
+				}
+				if (isClassifiers(value, partsEnd, end)) {
+					return partsEnd;
+				}
+				if (partsEnd == digitsEnd) {
+					return -1;
+				}
+				partsEnd = value.lastIndexOf('.', partsEnd - 1);
+			}
+		}
+		
+		/**
+		 * @return Start of match of {@link Regex#jarFilenameVersionSuffix}, which is the index of the hyphen before the version, -1 if value does
+		 *   not match. Version group can be found with {@link #versionWithOptionalClassifiers(String, int)} starting after the hyphen.
+		 */
+		public static int jarFilenameVersionSuffix(String value) {
+			int end = end(value);
+			for (int hyphen = value.indexOf('-'); hyphen >= 0 && hyphen < end; hyphen = value.indexOf('-', hyphen + 1)) {
+				if (versionWithOptionalClassifiers(value, hyphen + 1) >= 0) {
+					return hyphen;
+				}
+			}
+			return -1;
+		}
+		
+		/**
+		 * @return End of {@link Regex#CAP_GROUP_GROUP_ID} group (which always starts at 0) of {@link Regex#groupId}, -1 if value does not match.
+		 */
+		public static int groupId(String value) {
+			int end = end(value);
+			if (packageWithOptionalClass(value) == end || artifactId(value) == end) {
+				return end;
+			}
+			return -1;
+		}
+		
+		/**
+		 * @return True if value matches pattern returned by {@link Regex#getPatternForUserInputValidation(MavenUidComponent)}.
+		 */
+		public static boolean isValidUserInput(MavenUidComponent component, String value) {
+			switch(component) {
+			case GROUP_ID: return groupId(value) >= 0;
+			case ARTIFACT_ID: return artifactIdLike(value) >= 0;
+			case VERSION: return versionWithOptionalClassifiers(value) >= 0;
+			}
+			throw new IllegalStateException();
+		}
+		
+		/**
+		 * @return Length of value without a single line terminator at its end, which is where '$' matches in patterns.
+		 */
+		public static int end(String value) {
+			int length = value.length();
+			if (length >= 2 && value.charAt(length - 2) == '\r' && value.charAt(length - 1) == '\n') {
+				return length - 2;
+			}
+			if (length >= 1) {
+				char last = value.charAt(length - 1);
+				if (last == '\n' || last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+					return length - 1;
+				}
+			}
+			return length;
+		}
+		
+		private static int packageEnd(String value, int minSubpackages) {
+			int end = end(value);
+			int subpackages = 0;
+			int position = 0;
+			while (true) {
+				int subpackageEnd = subpackageEnd(value, position, end);
+				if (subpackageEnd == position) {
+					// only a class can follow the package, and only as last part
+					return subpackages >= minSubpackages && isClass(value, position, end) ? position - 1 : -1;
+				}
+				subpackages++;
+				if (subpackageEnd == end) {
+					return subpackages >= minSubpackages ? end : -1;
+				}
+				if (value.charAt(subpackageEnd) != '.') {
+					return -1;
+				}
+				position = subpackageEnd + 1;
+			}
+		}
+		
+		private static int subpackageEnd(String value, int start, int end) {
+			if (start == end || !isSubpackageStart(value.charAt(start))) {
+				return start;
+			}
+			int position = start + 1;
+			while (position < end && isSubpackagePart(value.charAt(position))) {
+				position++;
+			}
+			return position;
+		}
+		
+		private static boolean isClass(String value, int start, int end) {
+			if (start == end || !isUpperCase(value.charAt(start))) {
+				return false;
+			}
+			for (int i = start + 1; i < end; i++) {
+				char c = value.charAt(i);
+				if (!isAlphanumeric(c) && c != '_') {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		private static boolean isArtifactIdLike(String value, int start, int end) {
+			if (start == end) {
+				return false;
+			}
+			char first = value.charAt(start);
+			if (!isLowerCase(first) && !isUpperCase(first) && first != '_') {
+				return false;
+			}
+			for (int i = start + 1; i < end; i++) {
+				char c = value.charAt(i);
+				if (!isAlphanumeric(c) && c != '_' && c != '-' && c != '.') {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Classifiers are up to 3 alphanumeric parts, each preceded by '-' or '.', or nothing at all.
+		 */
+		private static boolean isClassifiers(String value, int start, int end) {
+			int parts = 0;
+			int position = start;
+			while (position < end) {
+				char separator = value.charAt(position);
+				if (parts == 3 || (separator != '-' && separator != '.')) {
+					return false;
+				}
+				int partEnd = position + 1;
+				while (partEnd < end && isAlphanumeric(value.charAt(partEnd))) {
+					partEnd++;
+				}
+				if (partEnd == position + 1) {
+					return false;
+				}
+				parts++;
+				position = partEnd;
+			}
+			return true;
+		}
+		
+		private static int digitsEnd(String value, int start, int end) {
+			int position = start;
+			while (position < end && isDigit(value.charAt(position))) {
+				position++;
+			}
+			return position;
+		}
+		
+		private static int upperCaseEnd(String value, int start, int end) {
+			int position = start;
+			while (position < end && isUpperCase(value.charAt(position))) {
+				position++;
+			}
+			return position;
+		}
+		
+		// character classes of patterns only contain ASCII characters
+		private static boolean isSubpackageStart(char c) {
+			return isLowerCase(c) || c == '_';
+		}
+		private static boolean isSubpackagePart(char c) {
+			return isLowerCase(c) || isDigit(c) || c == '_';
+		}
+		private static boolean isAlphanumeric(char c) {
+			return isLowerCase(c) || isUpperCase(c) || isDigit(c);
+		}
+		private static boolean isLowerCase(char c) {
+			return c >= 'a' && c <= 'z';
+		}
+		private static boolean isUpperCase(char c) {
+			return c >= 'A' && c <= 'Z';
+		}
+		private static boolean isDigit(char c) {
+			return c >= '0' && c <= '9';
+		}
+	}
+
 	public static class CandidateExtractionHelper {
 		private CandidateExtractionHelper() {}
 		
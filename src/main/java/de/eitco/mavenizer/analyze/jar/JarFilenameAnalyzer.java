@@ -1,12 +1,14 @@
 package de.eitco.mavenizer.analyze.jar;
 
-import java.util.regex.Matcher;
+import java.util.Set;
 
 import de.eitco.mavenizer.MavenUid.MavenUidComponent;
+import de.eitco.mavenizer.analyze.JarAnalyzer.AnalyzerInput;
 import de.eitco.mavenizer.analyze.JarAnalyzer.JarAnalyzerType;
 import de.eitco.mavenizer.analyze.JarAnalyzer.ValueCandidateCollector;
+import de.eitco.mavenizer.analyze.JarContentAnalyzer;
 
-public class JarFilenameAnalyzer {
+public class JarFilenameAnalyzer implements JarContentAnalyzer {
 	
 	public void analyze(ValueCandidateCollector result, String jarFilename) {
 		
@@ -15,23 +17,37 @@ public class JarFilenameAnalyzer {
 		var valueSource = "'" + jarFilename + "'";
 		var nameWithoutExt = jarFilename.substring(0, jarFilename.lastIndexOf('.'));
 		
-		Matcher matcher = Helper.Regex.jarFilenameVersionSuffix.matcher(nameWithoutExt);
-		if (matcher.find()) {
-			String version = matcher.group(Helper.Regex.CAP_GROUP_VERSION);
-			if (version != null) {
-				int suffixStart = matcher.start();
-				var nameWithoutVersion = nameWithoutExt.substring(0, suffixStart);
-				
-				result.addCandidate(MavenUidComponent.ARTIFACT_ID, nameWithoutVersion, 6, valueSource);
-				result.addCandidate(MavenUidComponent.VERSION, version, 6, valueSource);
-				return;
-			}
+		int suffixStart = Helper.Scan.jarFilenameVersionSuffix(nameWithoutExt);
+		if (suffixStart >= 0) {
+			int versionEnd = Helper.Scan.versionWithOptionalClassifiers(nameWithoutExt, suffixStart + 1);
+			String version = nameWithoutExt.substring(suffixStart + 1, versionEnd);
+			var nameWithoutVersion = nameWithoutExt.substring(0, suffixStart);
+			
+			result.addCandidate(MavenUidComponent.ARTIFACT_ID, nameWithoutVersion, 6, valueSource);
+			result.addCandidate(MavenUidComponent.VERSION, version, 6, valueSource);
+			return;
 		}
 		
 		result.addCandidate(MavenUidComponent.ARTIFACT_ID, nameWithoutExt, 4, valueSource);
 	}
 	
+	@Override
 	public JarAnalyzerType getType() {
 		return JarAnalyzerType.JAR_FILENAME;
 	}
+	
+	@Override
+	public Set<Input> getInputs() {
+		return Set.of(Input.JAR_FILENAME);
+	}
+	
+	@Override
+	public Cost getCost() {
+		return Cost.CHEAP;
+	}
+	
+	@Override
+	public void analyze(ValueCandidateCollector result, AnalyzerInput input) {
+		analyze(result, input.jar.name);
+	}
 }
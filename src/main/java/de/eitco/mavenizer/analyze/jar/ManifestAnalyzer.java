@@ -8,14 +8,15 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
-import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 
 import de.eitco.mavenizer.MavenUid.MavenUidComponent;
+import de.eitco.mavenizer.analyze.JarAnalyzer.AnalyzerInput;
 import de.eitco.mavenizer.analyze.JarAnalyzer.JarAnalyzerType;
 import de.eitco.mavenizer.analyze.JarAnalyzer.ValueCandidateCollector;
+import de.eitco.mavenizer.analyze.JarContentAnalyzer;
 
-public class ManifestAnalyzer {
+public class ManifestAnalyzer implements JarContentAnalyzer {
 	
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public void analyze(ValueCandidateCollector result, Optional<Manifest> manifestOptional) {
@@ -32,10 +33,26 @@ public class ManifestAnalyzer {
 		}
 	}
 	
+	@Override
 	public JarAnalyzerType getType() {
 		return JarAnalyzerType.MANIFEST;
 	}
 	
+	@Override
+	public Set<Input> getInputs() {
+		return Set.of(Input.MANIFEST);
+	}
+	
+	@Override
+	public Cost getCost() {
+		return Cost.CHEAP;
+	}
+	
+	@Override
+	public void analyze(ValueCandidateCollector result, AnalyzerInput input) {
+		analyze(result, input.getManifest());
+	}
+	
 	private void analyze(ValueCandidateCollector result, Set<Map.Entry<Attributes.Name, String>> attributes) {
 		for (var entry : attributes) {
 			String attrName = entry.getKey().toString();
@@ -48,28 +65,26 @@ public class ManifestAnalyzer {
 			if (attrName.endsWith(VERSION_ATTRIBUTE_SUFFIX) && !VERSION_ATTRIBUTE_EXCLUDES.contains(attrName)) {
 				var uidComponent = MavenUidComponent.VERSION;
 				
-				Matcher matcher = Helper.Regex.versionWidthOptionalClassifiers.matcher(attrValue);
-				if (matcher.find()) {
-					String version = matcher.group(Helper.Regex.CAP_GROUP_VERSION);
-					if (version != null) {
-						boolean hasClassifiers = !version.equals(attrValue);
-						var attrSource = attrName + ": '" + attrValue + "'";
-						// version without classifiers
-						{
-							var confidence = !hasClassifiers ? 3 : 1;
-							if (VERSION_ATTRIBUTE_LOW_CONFIDENCE.contains(attrName)) {
-								confidence--;
-							}
-							result.addCandidate(uidComponent, version, confidence, attrSource);
+				int versionEnd = Helper.Scan.versionWithOptionalClassifiers(attrValue);
+				if (versionEnd >= 0) {
+					String version = attrValue.substring(0, versionEnd);
+					boolean hasClassifiers = !version.equals(attrValue);
+					var attrSource = attrName + ": '" + attrValue + "'";
+					// version without classifiers
+					{
+						var confidence = !hasClassifiers ? 3 : 1;
+						if (VERSION_ATTRIBUTE_LOW_CONFIDENCE.contains(attrName)) {
+							confidence--;
 						}
-						// version with classifiers if it exists
-						if (hasClassifiers) {
-							var confidence = 1;
-							if (VERSION_ATTRIBUTE_LOW_CONFIDENCE.contains(attrName)) {
-								confidence--;
-							}
-							result.addCandidate(uidComponent, attrValue, confidence, attrSource);
+						result.addCandidate(uidComponent, version, confidence, attrSource);
+					}
+					// version with classifiers if it exists
+					if (hasClassifiers) {
+						var confidence = 1;
+						if (VERSION_ATTRIBUTE_LOW_CONFIDENCE.contains(attrName)) {
+							confidence--;
 						}
+						result.addCandidate(uidComponent, attrValue, confidence, attrSource);
 					}
 				}
 			} else if (Attribute.stringValues.contains(attrName)) {
@@ -183,23 +198,19 @@ public class ManifestAnalyzer {
 	 */
 	private static List<ScoredValue> extractPattern_PackageWithOptionalClass(String attributeValue, int confidenceExactMatch, int confidenceSubpatternMatch) {
 		
-		Matcher matcher = Helper.Regex.packageStrictWithOptionalClass.matcher(attributeValue);
-		if (!matcher.find()) {
+		int packageEnd = Helper.Scan.packageStrictWithOptionalClass(attributeValue);
+		if (packageEnd < 0) {
 			return List.of();
 		}
-		String pakkage = matcher.group(Helper.Regex.CAP_GROUP_PACKAGE);
+		String pakkage = attributeValue.substring(0, packageEnd);
 		
-		if (pakkage == null) {
-			return List.of();
-		} else {
-			var candidates = Helper.CandidateExtractionHelper.getPackageCandidates(pakkage);
-			var result = new ArrayList<ScoredValue>(candidates.size());
-			for (String candidate : candidates) {
-				int confidence = candidate.equals(attributeValue) ? confidenceExactMatch : confidenceSubpatternMatch;
-				result.add(new ScoredValue(candidate, confidence));
-			}
-			return result;
+		var candidates = Helper.CandidateExtractionHelper.getPackageCandidates(pakkage);
+		var result = new ArrayList<ScoredValue>(candidates.size());
+		for (String candidate : candidates) {
+			int confidence = candidate.equals(attributeValue) ? confidenceExactMatch : confidenceSubpatternMatch;
+			result.add(new ScoredValue(candidate, confidence));
 		}
+		return result;
 	}
 	
 	/**
@@ -207,12 +218,10 @@ public class ManifestAnalyzer {
 	 * If value matches artifactId, take that. 
 	 */
 	private static List<ScoredValue> extractPattern_ArtifactIdOrPackageLeaf(String attributeValue, int confidenceArtifact, int confidenceLeaf) {
-		Matcher matcher = Helper.Regex.artifactId.matcher(attributeValue);
-		if (matcher.find()) {
-			String artifactId = matcher.group(Helper.Regex.CAP_GROUP_ARTIFACT_ID);
-			if (artifactId != null) {
-				return List.of(new ScoredValue(artifactId, confidenceArtifact));
-			}
+		int artifactIdEnd = Helper.Scan.artifactId(attributeValue);
+		if (artifactIdEnd >= 0) {
+			String artifactId = attributeValue.substring(0, artifactIdEnd);
+			return List.of(new ScoredValue(artifactId, confidenceArtifact));
 		}
 		return extractPattern_PackageLeaf(attributeValue, confidenceLeaf);
 	}
@@ -221,13 +230,11 @@ public class ManifestAnalyzer {
 	 * If value matches package pattern (foo.bar.baz), extract leaf (baz).
 	 */
 	private static List<ScoredValue> extractPattern_PackageLeaf(String attributeValue, int confidenceLeaf) {
-		Matcher matcher = Helper.Regex.packageStrictWithOptionalClass.matcher(attributeValue);
-		if (matcher.find()) {
-			String pakkage = matcher.group(Helper.Regex.CAP_GROUP_PACKAGE);
-			if (pakkage != null) {
-				String leaf = Helper.CandidateExtractionHelper.getPackageLeaf(pakkage);
-				return List.of(new ScoredValue(leaf, confidenceLeaf));
-			}
+		int packageEnd = Helper.Scan.packageStrictWithOptionalClass(attributeValue);
+		if (packageEnd >= 0) {
+			String pakkage = attributeValue.substring(0, packageEnd);
+			String leaf = Helper.CandidateExtractionHelper.getPackageLeaf(pakkage);
+			return List.of(new ScoredValue(leaf, confidenceLeaf));
 		}
 		return List.of();
 	}
@@ -237,12 +244,10 @@ public class ManifestAnalyzer {
 	 * Unlike {@link #extractPattern_PackageLeaf(String, int)}, this pattern allows leafs to contain hyphens and periods.
 	 */
 	private static List<ScoredValue> extractPattern_PackageLeafOrArtifactLeaf(String attributeValue, int confidenceLeaf) {
-		Matcher matcher = Helper.Regex.optionalPackageWithArtifactIdLikeAsLeaf.matcher(attributeValue);
-		if (matcher.find()) {
-			String leaf = matcher.group(Helper.Regex.CAP_GROUP_ARTIFACT_ID);
-			if (leaf != null) {
-				return List.of(new ScoredValue(leaf, confidenceLeaf));
-			}
+		int leafStart = Helper.Scan.optionalPackageWithArtifactIdLikeAsLeaf(attributeValue);
+		if (leafStart >= 0) {
+			String leaf = attributeValue.substring(leafStart, Helper.Scan.end(attributeValue));
+			return List.of(new ScoredValue(leaf, confidenceLeaf));
 		}
 		return List.of();
 	}
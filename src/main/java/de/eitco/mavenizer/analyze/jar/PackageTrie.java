@@ -0,0 +1,143 @@
+package de.eitco.mavenizer.analyze.jar;
+
+import java.util.Arrays;
+
+/**
+ * Counts classes per folder of a jar. Built directly from raw zip entry names without creating any objects per class.
+ * <br>
+ * Each folder is a node identified by its index into primitive arrays. Children of a node are kept as linked list of siblings and folder
+ * names are compared char by char against the entry name. Since jars usually store classes of the same folder next to each other,
+ * the folder of the previous class is remembered and reused without walking the trie if the next class is in the same folder.
+ * Child nodes are always created after their parent, so they always have a higher index than their parent.
+ */
+final class PackageTrie {
+
+	static final int ROOT = 0;
+
+	private static final String VERSIONED_FOLDER = "META-INF/versions/";
+
+	private int size = 1;
+	private int[] parent = new int[64];
+	private int[] firstChild = new int[64];
+	private int[] nextSibling = new int[64];
+	private int[] depth = new int[64];
+	private int[] classCount = new int[64];
+	private int[] deepClassCount = null;// computed on first access
+	private String[] folderNames = new String[64];
+
+	// folder of previous class
+	private String lastEntryName = null;
+	private int lastFolderEnd = -1;
+	private int lastNode = -1;
+
+	PackageTrie() {
+		parent[ROOT] = -1;
+		firstChild[ROOT] = -1;
+		nextSibling[ROOT] = -1;
+		folderNames[ROOT] = "";
+	}
+
+	/**
+	 * Counts a class in the folder of the given entry. Classes in jar root and in versioned folders of multi-release jars are ignored.
+	 */
+	void addClass(String entryName) {
+		int folderEnd = entryName.lastIndexOf('/');
+		if (folderEnd < 0) {
+			return;
+		}
+		if (lastNode >= 0 && folderEnd == lastFolderEnd && entryName.regionMatches(0, lastEntryName, 0, folderEnd)) {
+			classCount[lastNode]++;
+			return;
+		}
+		if (entryName.startsWith(VERSIONED_FOLDER)) {
+			return;
+		}
+		int node = ROOT;
+		int start = 0;
+		while (start < folderEnd) {
+			int end = entryName.indexOf('/', start);
+			if (end > start) {
+				// empty names caused by leading or double slashes are skipped
+				node = getOrCreateChild(node, entryName, start, end);
+			}
+			start = end + 1;
+		}
+		classCount[node]++;
+		deepClassCount = null;
+		lastEntryName = entryName;
+		lastFolderEnd = folderEnd;
+		lastNode = node;
+	}
+
+	private int getOrCreateChild(int node, String entryName, int start, int end) {
+		int length = end - start;
+		int child = firstChild[node];
+		while (child >= 0) {
+			var name = folderNames[child];
+			if (name.length() == length && entryName.regionMatches(start, name, 0, length)) {
+				return child;
+			}
+			child = nextSibling[child];
+		}
+		if (size == parent.length) {
+			int capacity = size * 2;
+			parent = Arrays.copyOf(parent, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			nextSibling = Arrays.copyOf(nextSibling, capacity);
+			depth = Arrays.copyOf(depth, capacity);
+			classCount = Arrays.copyOf(classCount, capacity);
+			folderNames = Arrays.copyOf(folderNames, capacity);
+		}
+		child = size++;
+		parent[child] = node;
+		firstChild[child] = -1;
+		nextSibling[child] = firstChild[node];
+		firstChild[node] = child;
+		depth[child] = depth[node] + 1;
+		folderNames[child] = entryName.substring(start, end);
+		return child;
+	}
+
+	/**
+	 * @return Number of nodes including root. Nodes are numbered from 0 (root) to size - 1.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return Number of folders from root to given node, 0 for root.
+	 */
+	int depth(int node) {
+		return depth[node];
+	}
+
+	/**
+	 * @return Number of classes inside given folder and all its sub-folders.
+	 */
+	int deepClassCount(int node) {
+		if (deepClassCount == null) {
+			// children have higher index than their parent, so iterating backwards sums up children before their parent
+			var deep = Arrays.copyOf(classCount, size);
+			for (int i = size - 1; i > ROOT; i--) {
+				deep[parent[i]] += deep[i];
+			}
+			deepClassCount = deep;
+		}
+		return deepClassCount[node];
+	}
+
+	/**
+	 * @return Folder path of given node relative to jar root, with given separator between folder names.
+	 */
+	String path(int node, char separator) {
+		var path = new StringBuilder();
+		for (int current = node; current != ROOT; current = parent[current]) {
+			if (path.length() > 0) {
+				path.insert(0, separator);
+			}
+			path.insert(0, folderNames[current]);
+		}
+		return path.toString();
+	}
+}
@@ -9,22 +9,110 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import org.apache.maven.model.Model;
-import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.EntityReplacementMap;
+import org.codehaus.plexus.util.xml.pull.MXParser;
+import org.codehaus.plexus.util.xml.pull.XmlPullParser;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import de.eitco.mavenizer.MavenUid.MavenUidComponent;
 import de.eitco.mavenizer.analyze.JarAnalyzer.FileBuffer;
+import de.eitco.mavenizer.analyze.JarAnalyzer.AnalyzerInput;
 import de.eitco.mavenizer.analyze.JarAnalyzer.JarAnalyzerType;
 import de.eitco.mavenizer.analyze.JarAnalyzer.PomFileType;
 import de.eitco.mavenizer.analyze.JarAnalyzer.ValueCandidateCollector;
+import de.eitco.mavenizer.analyze.JarContentAnalyzer;
 
-public class PomAnalyzer {
-
+public class PomAnalyzer implements JarContentAnalyzer {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(PomAnalyzer.class);
+	
+	/**
+	 * Coordinates of a pom.xml. Read with a pull parser that skips all other elements and stops as soon as groupId, artifactId and version
+	 * of the project itself are known, instead of building a complete Maven model, which is slow for the large poms embedded in shaded jars.
+	 */
+	private static class PomCoordinates {
+		String groupId;
+		String artifactId;
+		String version;
+		String parentGroupId;
+		String parentVersion;
+		
+		boolean isComplete() {
+			return groupId != null && artifactId != null && version != null;
+		}
+		
+		static PomCoordinates read(byte[] content) throws IOException, XmlPullParserException {
+			var result = new PomCoordinates();
+			
+			// same encoding detection and predefined entities as MavenXpp3Reader
+			var parser = new MXParser(EntityReplacementMap.defaultEntityReplacementMap);
+			parser.setInput(ReaderFactory.newXmlReader(new ByteArrayInputStream(content)));
+			
+			int event = parser.next();
+			while (event != XmlPullParser.START_TAG && event != XmlPullParser.END_DOCUMENT) {
+				event = parser.next();
+			}
+			if (event != XmlPullParser.START_TAG || !parser.getName().equals("project")) {
+				return result;
+			}
+			// if elements are duplicated, first one wins
+			while (!result.isComplete() && parser.nextTag() == XmlPullParser.START_TAG) {
+				switch (parser.getName()) {
+				case "groupId":
+					result.groupId = firstNonNull(result.groupId, parser.nextText().trim());
+					break;
+				case "artifactId":
+					result.artifactId = firstNonNull(result.artifactId, parser.nextText().trim());
+					break;
+				case "version":
+					result.version = firstNonNull(result.version, parser.nextText().trim());
+					break;
+				case "parent":
+					while (parser.nextTag() == XmlPullParser.START_TAG) {
+						switch (parser.getName()) {
+						case "groupId":
+							result.parentGroupId = firstNonNull(result.parentGroupId, parser.nextText().trim());
+							break;
+						case "version":
+							result.parentVersion = firstNonNull(result.parentVersion, parser.nextText().trim());
+							break;
+						default:
+							skipElement(parser);
+						}
+					}
+					break;
+				default:
+					skipElement(parser);
+				}
+			}
+			return result;
+		}
+		
+		private static String firstNonNull(String current, String next) {
+			return current != null ? current : next;
+		}
+		
+		private static void skipElement(XmlPullParser parser) throws IOException, XmlPullParserException {
+			int depth = 1;
+			while (depth > 0) {
+				int event = parser.next();
+				if (event == XmlPullParser.START_TAG) {
+					depth++;
+				} else if (event == XmlPullParser.END_TAG) {
+					depth--;
+				}
+			}
+		}
+	}
+	
 	public void analyze(ValueCandidateCollector result, List<FileBuffer> pomFiles) {
 		
 		if (pomFiles.isEmpty()) {
@@ -112,18 +200,18 @@ public class PomAnalyzer {
 					
 					if (pomFileType == PomFileType.POM_XML) {
 						
-						MavenXpp3Reader reader = new MavenXpp3Reader();
-				        Model model = reader.read(new ByteArrayInputStream(file.content));
+						PomCoordinates pom;
+						try {
+							pom = PomCoordinates.read(file.content);
+						} catch (IOException | XmlPullParserException e) {
+							// a single broken pom should not abort analysis, its values are treated as missing
+							LOG.warn("Ignoring content of malformed '" + file.path + "': " + e.getMessage());
+							pom = new PomCoordinates();
+						}
 				        
-				        foundValues.get(MavenUidComponent.ARTIFACT_ID).computeIfAbsent(model.getArtifactId(), listConstructor).add(fileValueSource);
-				        var groupId = model.getGroupId();
-				        var version = model.getVersion();
-				        if (groupId == null && model.getParent() != null) {
-				        	groupId = model.getParent().getGroupId();
-				        }
-				        if (version == null && model.getParent() != null) {
-				        	version = model.getParent().getVersion();
-				        }
+				        foundValues.get(MavenUidComponent.ARTIFACT_ID).computeIfAbsent(pom.artifactId, listConstructor).add(fileValueSource);
+				        var groupId = pom.groupId != null ? pom.groupId : pom.parentGroupId;
+				        var version = pom.version != null ? pom.version : pom.parentVersion;
 				        foundValues.get(MavenUidComponent.GROUP_ID).computeIfAbsent(groupId, listConstructor).add(fileValueSource);
 				        foundValues.get(MavenUidComponent.VERSION).computeIfAbsent(version, listConstructor).add(fileValueSource);
 					}
@@ -141,14 +229,28 @@ public class PomAnalyzer {
 			}
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
-		} catch (XmlPullParserException e) {
-			throw new RuntimeException(e);
 		}
 		
 		return foundValues;
 	}
 	
+	@Override
 	public JarAnalyzerType getType() {
 		return JarAnalyzerType.POM;
 	}
+	
+	@Override
+	public Set<Input> getInputs() {
+		return Set.of(Input.POM_FILES);
+	}
+	
+	@Override
+	public Cost getCost() {
+		return Cost.MODERATE;
+	}
+	
+	@Override
+	public void analyze(ValueCandidateCollector result, AnalyzerInput input) {
+		analyze(result, input.content.pomFiles);
+	}
 }
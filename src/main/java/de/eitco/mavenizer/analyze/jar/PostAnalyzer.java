@@ -1,13 +1,16 @@
 package de.eitco.mavenizer.analyze.jar;
 
 import java.util.Map;
+import java.util.Set;
 
 import de.eitco.mavenizer.MavenUid.MavenUidComponent;
+import de.eitco.mavenizer.analyze.JarAnalyzer.AnalyzerInput;
 import de.eitco.mavenizer.analyze.JarAnalyzer.JarAnalyzerType;
 import de.eitco.mavenizer.analyze.JarAnalyzer.ValueCandidateCollector;
+import de.eitco.mavenizer.analyze.JarContentAnalyzer;
 import de.eitco.mavenizer.analyze.ValueCandidate;
 
-public class PostAnalyzer {
+public class PostAnalyzer implements JarContentAnalyzer {
 
 	public void analyze(ValueCandidateCollector result, Map<MavenUidComponent, Map<String, ValueCandidate>> candidates) {
 		// this analyzer deduces additional candidates from the info gathered by the other analyzers
@@ -30,7 +33,23 @@ public class PostAnalyzer {
 		}
 	}
 	
+	@Override
 	public JarAnalyzerType getType() {
 		return JarAnalyzerType.POST;
 	}
+	
+	@Override
+	public Set<Input> getInputs() {
+		return Set.of(Input.CANDIDATES);
+	}
+	
+	@Override
+	public Cost getCost() {
+		return Cost.CHEAP;
+	}
+	
+	@Override
+	public void analyze(ValueCandidateCollector result, AnalyzerInput input) {
+		analyze(result, input.candidates);
+	}
 }
@@ -7,8 +7,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -23,6 +25,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import de.eitco.mavenizer.AnalysisReport;
 import de.eitco.mavenizer.Cli;
+import de.eitco.mavenizer.NestedArchives;
+import de.eitco.mavenizer.NestedArchives.NestedJar;
 import de.eitco.mavenizer.StringUtil;
 import de.eitco.mavenizer.Util;
 
@@ -94,67 +98,147 @@ public class Generator {
 			return;
 		}
 		
-		boolean areAllJarFilesValid = true;
-		for (var jar : jarReports) {
-			var jarPath = Paths.get(jar.dir).resolve(jar.filename);
-			var jarFile = jarPath.toFile();
-			if (!jarFile.exists() || !jarFile.isFile()) {
-				cli.println("Warning: Jar file not found: " + jarPath, LOG::warn);
-				areAllJarFilesValid = false;
-			} else {
-				var actualHash = Util.sha256(jarFile).jarSha256;
-				var expectedHash = jar.sha256;
-				if (!actualHash.equals(expectedHash)) {
-					cli.println("Warning: Found jar file has different content compared to jar from report: " + jarPath, LOG::warn);
+		try (var archives = new NestedArchives()) {
+			var nestedJars = new HashMap<AnalysisReport.JarReport, NestedJar>();
+			
+			boolean areAllJarFilesValid = true;
+			for (var jar : jarReports) {
+				if (jar.nestedIn != null) {
+					var jarLocation = Paths.get(jar.dir).resolve(jar.nestedIn);
+					var nestedJar = findNestedJar(archives, jar);
+					if (nestedJar.isEmpty()) {
+						cli.println("Warning: Jar not found inside archive: " + jarLocation, LOG::warn);
+						areAllJarFilesValid = false;
+					} else {
+						nestedJars.put(jar, nestedJar.get());
+						try (var source = nestedJar.get().open()) {
+							var actualHash = Util.sha256(source, jar.fingerprintVersion).jarSha256;
+							if (!actualHash.equals(jar.sha256)) {
+								cli.println("Warning: Found jar has different content compared to jar from report: " + jarLocation, LOG::warn);
+								areAllJarFilesValid = false;
+							}
+						}
+					}
+					continue;
+				}
+				var jarPath = Paths.get(jar.dir).resolve(jar.filename);
+				var jarFile = jarPath.toFile();
+				if (!jarFile.exists() || !jarFile.isFile()) {
+					cli.println("Warning: Jar file not found: " + jarPath, LOG::warn);
 					areAllJarFilesValid = false;
+				} else {
+					var actualHash = Util.sha256(jarFile, jar.fingerprintVersion).jarSha256;
+					var expectedHash = jar.sha256;
+					if (!actualHash.equals(expectedHash)) {
+						cli.println("Warning: Found jar file has different content compared to jar from report: " + jarPath, LOG::warn);
+						areAllJarFilesValid = false;
+					}
 				}
 			}
-		}
-		if (!areAllJarFilesValid) {
-			cli.println("Warning(s) above can be ignored, but will cause generated install script to contain incorrect file paths!");
-			cli.askUserToContinue("    ");
-		}
-		
-		// TODO maybe check again with MavenRepoChecker
-		cli.println("The following jars were found online according to their reports.");
-		cli.println("Therefore they will be excluded from install script(s).");
-		jarReports.stream()
-				.filter(jar -> jar.foundOnRemote)
-				.forEach(jar -> {
-					cli.println("    " + StringUtil.rightPad(jar.filename, 25) + "  ( " + jar.dir + " )");
-				});
-		cli.println();
-		
-		if (!args.noScript) {
-			for (var scriptType : args.scriptTypes) {
-				var type = ScriptType.fileExtensions.get(scriptType);
+			if (!areAllJarFilesValid) {
+				cli.println("Warning(s) above can be ignored, but will cause generated install script to contain incorrect file paths!");
+				cli.askUserToContinue("    ");
+			}
+			
+			// TODO maybe check again with MavenRepoChecker
+			cli.println("The following jars were found online according to their reports.");
+			cli.println("Therefore they will be excluded from install script(s).");
+			jarReports.stream()
+					.filter(jar -> jar.foundOnRemote)
+					.forEach(jar -> {
+						cli.println("    " + StringUtil.rightPad(jar.filename, 25) + "  ( " + jar.dir + " )");
+					});
+			cli.println();
+			
+			if (!args.noScript) {
+				// install-file needs a file, so jars inside archives are extracted
+				var extractedJars = new HashMap<AnalysisReport.JarReport, Path>();
+				for (var entry : nestedJars.entrySet()) {
+					if (!entry.getKey().foundOnRemote) {
+						extractedJars.put(entry.getKey(), extractNestedJar(entry.getValue()));
+					}
+				}
 				
-				var fileContent = new StringBuilder();
-				if (type.equals(ScriptType.POWERSHELL)) {
+				for (var scriptType : args.scriptTypes) {
+					var type = ScriptType.fileExtensions.get(scriptType);
 					
-					for (var jar : jarReports) {
-						if (!jar.foundOnRemote) {
-							var jarPath = Paths.get(jar.dir).resolve(jar.filename);
-							var uid = jar.result;
-							
-							fileContent.append(args.scriptCommand);
-							fileContent.append(" -Dpackaging='jar'");
-							fileContent.append(" -Dfile='" + jarPath + "'");
-							fileContent.append(" -DgroupId='" + uid.groupId + "'");
-							fileContent.append(" -DartifactId='" + uid.artifactId + "'");
-							fileContent.append(" -Dversion='" + uid.version + "'");
-							if (uid.classifier != null && !uid.classifier.isBlank()) {
-								fileContent.append(" -Dclassifier='" + uid.classifier + "'");
+					var fileContent = new StringBuilder();
+					if (type.equals(ScriptType.POWERSHELL)) {
+						
+						for (var jar : jarReports) {
+							if (!jar.foundOnRemote) {
+								var jarPath = extractedJars.getOrDefault(jar, Paths.get(jar.dir).resolve(jar.filename));
+								var uid = jar.result;
+								
+								fileContent.append(args.scriptCommand);
+								fileContent.append(" -Dpackaging='jar'");
+								fileContent.append(" -Dfile='" + jarPath + "'");
+								fileContent.append(" -DgroupId='" + uid.groupId + "'");
+								fileContent.append(" -DartifactId='" + uid.artifactId + "'");
+								fileContent.append(" -Dversion='" + uid.version + "'");
+								if (uid.classifier != null && !uid.classifier.isBlank()) {
+									fileContent.append(" -Dclassifier='" + uid.classifier + "'");
+								}
+								fileContent.append("; ");
+								fileContent.append(POWERSHELL_EXIT_ON_MVN_ERROR_COMMAND);
+								fileContent.append("\n");
 							}
-							fileContent.append("; ");
-							fileContent.append(POWERSHELL_EXIT_ON_MVN_ERROR_COMMAND);
-							fileContent.append("\n");
 						}
 					}
+					
+					var path = Paths.get(args.scriptFile + "." + type.fileExtension);
+					cli.println("Generating install script: " + path.toAbsolutePath(), LOG::info);
+					try {
+						Files.writeString(path, fileContent);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			}
+			
+			if (args.pom) {
+				var fileContent = new StringBuilder();
+				fileContent.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\"" + "\n");
+				fileContent.append("	xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"" + "\n");
+				fileContent.append("	xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 https://maven.apache.org/xsd/maven-4.0.0.xsd\">" + "\n");
+				fileContent.append("	<modelVersion>4.0.0</modelVersion>" + "\n");
+				fileContent.append("	<groupId>???</groupId>" + "\n");
+				fileContent.append("	<artifactId>???</artifactId>" + "\n");
+				fileContent.append("	<version>0.0.1-SNAPSHOT</version>" + "\n");
+				fileContent.append("" + "\n");
+				
+				if (POM_VERSION_PROPS) {
+					fileContent.append("	<properties>" + "\n");
+					for (var jar : jarReports) {
+						var uid = jar.result;
+						fileContent.append("		<version." + uid.artifactId + ">" + uid.version + "</version." + uid.artifactId +">" + "\n");
+					}
+					fileContent.append("	</properties>" + "\n");
+					fileContent.append("" + "\n");
+				}
+				
+				fileContent.append("	<dependencies>" + "\n");
+				for (var jar : jarReports) {
+					var uid = jar.result;
+					fileContent.append("		<dependency>" + "\n");
+					fileContent.append("			<groupId>" + uid.groupId + "</groupId>" + "\n");
+					fileContent.append("			<artifactId>" + uid.artifactId + "</artifactId>" + "\n");
+					if (POM_VERSION_PROPS) {
+						fileContent.append("			<version>${version." + uid.artifactId + "}</version>" + "\n");
+					} else {
+						fileContent.append("			<version>" + uid.version + "</version>" + "\n");
+					}
+					if (uid.classifier != null && !uid.classifier.isBlank()) {
+						fileContent.append("			<classifier>" + uid.classifier + "</classifier>" + "\n");
+					}
+					fileContent.append("		</dependency>" + "\n");
 				}
+				fileContent.append("	</dependencies>" + "\n");
 				
-				var path = Paths.get(args.scriptFile + "." + type.fileExtension);
-				cli.println("Generating install script: " + path.toAbsolutePath(), LOG::info);
+				fileContent.append("</project>" + "\n");
+				
+				var path = Paths.get(args.pomFile);
+				cli.println("Generating POM: " + path.toAbsolutePath(), LOG::info);
 				try {
 					Files.writeString(path, fileContent);
 				} catch (IOException e) {
@@ -162,55 +246,36 @@ public class Generator {
 				}
 			}
 		}
-		
-		if (args.pom) {
-			var fileContent = new StringBuilder();
-			fileContent.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\"" + "\n");
-			fileContent.append("	xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"" + "\n");
-			fileContent.append("	xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 https://maven.apache.org/xsd/maven-4.0.0.xsd\">" + "\n");
-			fileContent.append("	<modelVersion>4.0.0</modelVersion>" + "\n");
-			fileContent.append("	<groupId>???</groupId>" + "\n");
-			fileContent.append("	<artifactId>???</artifactId>" + "\n");
-			fileContent.append("	<version>0.0.1-SNAPSHOT</version>" + "\n");
-			fileContent.append("" + "\n");
-			
-			if (POM_VERSION_PROPS) {
-				fileContent.append("	<properties>" + "\n");
-				for (var jar : jarReports) {
-					var uid = jar.result;
-					fileContent.append("		<version." + uid.artifactId + ">" + uid.version + "</version." + uid.artifactId +">" + "\n");
-				}
-				fileContent.append("	</properties>" + "\n");
-				fileContent.append("" + "\n");
-			}
-			
-			fileContent.append("	<dependencies>" + "\n");
-			for (var jar : jarReports) {
-				var uid = jar.result;
-				fileContent.append("		<dependency>" + "\n");
-				fileContent.append("			<groupId>" + uid.groupId + "</groupId>" + "\n");
-				fileContent.append("			<artifactId>" + uid.artifactId + "</artifactId>" + "\n");
-				if (POM_VERSION_PROPS) {
-					fileContent.append("			<version>${version." + uid.artifactId + "}</version>" + "\n");
-				} else {
-					fileContent.append("			<version>" + uid.version + "</version>" + "\n");
-				}
-				if (uid.classifier != null && !uid.classifier.isBlank()) {
-					fileContent.append("			<classifier>" + uid.classifier + "</classifier>" + "\n");
-				}
-				fileContent.append("		</dependency>" + "\n");
-			}
-			fileContent.append("	</dependencies>" + "\n");
-			
-			fileContent.append("</project>" + "\n");
-			
-			var path = Paths.get(args.pomFile);
-			cli.println("Generating POM: " + path.toAbsolutePath(), LOG::info);
-			try {
-				Files.writeString(path, fileContent);
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
-			}
+	}
+	
+	private Optional<NestedJar> findNestedJar(NestedArchives archives, AnalysisReport.JarReport jar) {
+		int separator = jar.nestedIn.indexOf(NestedArchives.SEPARATOR);
+		if (separator < 0) {
+			return Optional.empty();
+		}
+		var archive = Paths.get(jar.dir).resolve(jar.nestedIn.substring(0, separator));
+		if (!archive.toFile().isFile()) {
+			return Optional.empty();
+		}
+		return archives.find(archive, jar.nestedIn.substring(separator + NestedArchives.SEPARATOR.length()));
+	}
+	
+	private Path extractNestedJar(NestedJar nestedJar) {
+		var target = Paths.get(args.extractDir)
+				.resolve(nestedJar.archive.getFileName().toString())
+				.resolve(nestedJar.nestedPath.replace(NestedArchives.SEPARATOR, "/"))
+				.normalize();
+		if (!target.startsWith(Paths.get(args.extractDir).normalize())) {
+			throw new IllegalStateException("Path of nested jar '" + nestedJar.nestedPath + "' points outside of extraction folder!");
+		}
+		try {
+			Files.createDirectories(target.getParent());
+			Files.deleteIfExists(target);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
+		cli.println("Extracting jar from archive: " + target, LOG::info);
+		nestedJar.extractTo(target);
+		return target;
 	}
 }
@@ -36,6 +36,10 @@ public class GeneratorArgs {
 	
 	@Parameter(order = 60, names = "-pomFile", description = "Only if -pom is enabled: Name of pom output file.")
 	String pomFile = "eitco-mavenizer-pom.xml";
+	
+	@Parameter(order = 70, names = "-extractDir", description = 
+			"Only for jars found inside archives (war, ear, zip, tar.gz): Folder where these jars are extracted to, so that the install script can reference them.")
+	String extractDir = "./eitco-mavenizer-extracted";
 
 	
 	public Optional<String> validateMain() {
@@ -0,0 +1,191 @@
+package de.eitco.mavenizer.analyze.jar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import de.eitco.mavenizer.MavenUid.MavenUidComponent;
+import de.eitco.mavenizer.analyze.jar.Helper.Regex;
+import de.eitco.mavenizer.analyze.jar.Helper.Scan;
+
+/**
+ * Differential test of {@link Helper.Scan} against the patterns in {@link Helper.Regex}, which scanners must match exactly, including
+ * group boundaries and the single line terminator allowed at the end of a value.
+ */
+class HelperTest {
+
+	private static final List<String> LINE_TERMINATORS = List.of("", "\n", "\r\n", "\r", "\u0085", "\u2028", "\u2029");
+
+	private static String group(Pattern pattern, String value, String group) {
+		Matcher matcher = pattern.matcher(value);
+		return matcher.find() ? matcher.group(group) : null;
+	}
+
+	private static String prefix(String value, int end) {
+		return end >= 0 ? value.substring(0, end) : null;
+	}
+
+	private static String escape(String value) {
+		var escaped = new StringBuilder("'");
+		for (var c : value.toCharArray()) {
+			escaped.append(c >= ' ' && c < 127 ? String.valueOf(c) : String.format("\\u%04x", (int) c));
+		}
+		return escaped.append("'").toString();
+	}
+
+	private static void assertScanMatchesRegex(String value) {
+		var message = escape(value);
+		assertEquals(
+				group(Regex.packageWithOptionalClass, value, Regex.CAP_GROUP_PACKAGE),
+				prefix(value, Scan.packageWithOptionalClass(value)),
+				"packageWithOptionalClass " + message);
+		assertEquals(
+				group(Regex.packageStrictWithOptionalClass, value, Regex.CAP_GROUP_PACKAGE),
+				prefix(value, Scan.packageStrictWithOptionalClass(value)),
+				"packageStrictWithOptionalClass " + message);
+		assertEquals(
+				group(Regex.artifactId, value, Regex.CAP_GROUP_ARTIFACT_ID),
+				prefix(value, Scan.artifactId(value)),
+				"artifactId " + message);
+		assertEquals(
+				group(Regex.artifactIdLike, value, Regex.CAP_GROUP_ARTIFACT_ID),
+				prefix(value, Scan.artifactIdLike(value)),
+				"artifactIdLike " + message);
+		var leafStart = Scan.optionalPackageWithArtifactIdLikeAsLeaf(value);
+		assertEquals(
+				group(Regex.optionalPackageWithArtifactIdLikeAsLeaf, value, Regex.CAP_GROUP_ARTIFACT_ID),
+				leafStart >= 0 ? value.substring(leafStart, Scan.end(value)) : null,
+				"optionalPackageWithArtifactIdLikeAsLeaf " + message);
+		assertEquals(
+				group(Regex.versionWidthOptionalClassifiers, value, Regex.CAP_GROUP_VERSION),
+				prefix(value, Scan.versionWithOptionalClassifiers(value)),
+				"versionWithOptionalClassifiers " + message);
+
+		Matcher suffixMatcher = Regex.jarFilenameVersionSuffix.matcher(value);
+		var hyphen = Scan.jarFilenameVersionSuffix(value);
+		assertEquals(
+				suffixMatcher.find() ? suffixMatcher.start() + " " + suffixMatcher.group(Regex.CAP_GROUP_VERSION) : null,
+				hyphen >= 0 ? hyphen + " " + value.substring(hyphen + 1, Scan.versionWithOptionalClassifiers(value, hyphen + 1)) : null,
+				"jarFilenameVersionSuffix " + message);
+
+		assertEquals(
+				group(Regex.groupId, value, Regex.CAP_GROUP_GROUP_ID),
+				prefix(value, Scan.groupId(value)),
+				"groupId " + message);
+		for (var component : MavenUidComponent.values()) {
+			assertEquals(
+					Regex.getPatternForUserInputValidation(component).matcher(value).find(),
+					Scan.isValidUserInput(component, value),
+					"isValidUserInput " + component + " " + message);
+		}
+	}
+
+	private static void assertScanMatchesRegex(Set<String> values) {
+		for (var value : values) {
+			for (var lineTerminator : LINE_TERMINATORS) {
+				assertScanMatchesRegex(value + lineTerminator);
+			}
+		}
+	}
+
+	@Test
+	void scanMatchesRegexForKnownValues() {
+		assertScanMatchesRegex(new LinkedHashSet<>(List.of(
+				"", ".", "-", "a", "A", "_", "1",
+				"de.eitco.mavenizer", "de.eitco.mavenizer.Main", "de.eitco.Mavenizer.main", "de..eitco", "de.eitco.", ".de.eitco",
+				"org.apache.commons.io.IOUtils", "javax.annotation", "org.w3c.dom", "org.example.$Proxy",
+				"commons-io", "xml-apis", "log4j-1.2-api", "Saxon-HE", "jakarta.xml.bind-api", "-abc", "abc-",
+				"2.11.0", "1.2.11", "3.1.SONATYPE", "2.4.0-b180830.0438", "2.1.4-hudson-build-463", "1.0-SNAPSHOT", "1.0.0.RELEASE",
+				"1.0-a-b-c-d", "1..0", "1.0.", "v1.0",
+				"commons-io-2.11.0", "log4j-1.2-api-2.17.1", "jackson-databind-2.13.3", "foo-1.0-SNAPSHOT-sources", "foo-bar", "foo-1.0-x.y.z.w")));
+	}
+
+	@Test
+	void scanMatchesRegexForClasspathJars() {
+		var values = new LinkedHashSet<String>();
+		var jars = 0;
+		for (var classpathEntry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if (!classpathEntry.endsWith(".jar")) {
+				continue;
+			}
+			// same values as analyzers get: jar filenames, manifest attribute values and packages of entries
+			var filename = Paths.get(classpathEntry).getFileName().toString();
+			values.add(filename);
+			values.add(filename.substring(0, filename.length() - ".jar".length()));
+			try (var jar = new JarFile(classpathEntry)) {
+				var manifest = jar.getManifest();
+				if (manifest != null) {
+					addAttributeValues(values, manifest.getMainAttributes());
+					for (var attributes : manifest.getEntries().values()) {
+						addAttributeValues(values, attributes);
+					}
+				}
+				for (var entry : Collections.list(jar.entries())) {
+					var name = entry.getName();
+					var folderEnd = name.lastIndexOf('/');
+					if (folderEnd > 0) {
+						values.add(name.substring(0, folderEnd).replace('/', '.'));
+					}
+					values.add(name.replace('/', '.'));
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			jars++;
+		}
+		assertTrue(jars > 0, "No jars found on classpath");
+		assertScanMatchesRegex(values);
+	}
+
+	private static void addAttributeValues(Set<String> values, Attributes attributes) {
+		for (var value : attributes.values()) {
+			values.add(value.toString());
+			values.add(value.toString().trim());
+		}
+	}
+
+	@Test
+	void scanMatchesRegexForRandomValues() {
+		var alphabet = "aZ0_.-\nB9z\r\u2028 ";
+		var random = new Random(42);
+		for (int i = 0; i < 200_000; i++) {
+			var value = new StringBuilder();
+			var length = random.nextInt(14);
+			for (int j = 0; j < length; j++) {
+				value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			assertScanMatchesRegex(value.toString());
+		}
+	}
+
+	@Test
+	void scanMatchesRegexForAllShortValues() {
+		var alphabet = "a1.-A";
+		var value = new StringBuilder();
+		for (int length = 0; length <= 7; length++) {
+			var count = (int) Math.pow(alphabet.length(), length);
+			for (int n = 0; n < count; n++) {
+				value.setLength(0);
+				for (int j = 0, rest = n; j < length; j++, rest /= alphabet.length()) {
+					value.append(alphabet.charAt(rest % alphabet.length()));
+				}
+				assertScanMatchesRegex(value.toString());
+			}
+		}
+	}
+}
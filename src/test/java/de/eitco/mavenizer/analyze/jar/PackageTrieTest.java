@@ -0,0 +1,176 @@
+package de.eitco.mavenizer.analyze.jar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.Test;
+
+import de.eitco.mavenizer.Util;
+
+/**
+ * Compares {@link PackageTrie} with the Path based folder tree that {@link ClassFilepathAnalyzer} used before.
+ */
+class PackageTrieTest {
+
+	/**
+	 * Previous implementation, kept as reference: one node with a child map per folder, keyed by {@link Path} names.
+	 */
+	private static class PathFolderNode {
+		final Path path;
+		int classCount;
+		Map<String, PathFolderNode> children;
+
+		PathFolderNode(Path path) {
+			this.path = path;
+		}
+
+		static PathFolderNode build(List<String> entryNames) {
+			var root = new PathFolderNode(Util.CURRENT_DIR);
+			for (var entryName : entryNames) {
+				var entryPath = Paths.get(entryName);
+				var parent = entryPath.getParent();
+				var versioned = entryPath.startsWith(Paths.get("META-INF/versions"));
+				if (parent != null && !versioned) {
+					root.incrementClassCount(parent);
+				}
+			}
+			return root;
+		}
+
+		void incrementClassCount(Path relativePath) {
+			if (relativePath.equals(Util.CURRENT_DIR)) {
+				classCount++;
+			} else {
+				if (children == null) {
+					children = new HashMap<>();
+				}
+				var childName = relativePath.getName(0).toString();
+				var childFolder = children.computeIfAbsent(childName, key -> new PathFolderNode(path.resolve(childName)));
+				var pathDepth = relativePath.getNameCount();
+				var subPath = pathDepth == 1 ? Util.CURRENT_DIR : relativePath.subpath(1, pathDepth);
+				childFolder.incrementClassCount(subPath);
+			}
+		}
+
+		/**
+		 * Adds "depth deepClassCount" of this folder and all sub-folders to given map, keyed by path without the leading root folder.
+		 */
+		int getStats(Map<String, String> stats) {
+			int absoluteCount = classCount;
+			if (children != null) {
+				for (var child : children.values()) {
+					absoluteCount += child.getStats(stats);
+				}
+			}
+			var depth = path.getNameCount() - 1;
+			var relative = depth == 0 ? "" : path.subpath(1, path.getNameCount()).toString().replace(File.separatorChar, '/');
+			stats.put(relative, depth + " " + absoluteCount);
+			return absoluteCount;
+		}
+	}
+
+	private static Map<String, String> expectedStats(List<String> entryNames) {
+		var stats = new TreeMap<String, String>();
+		PathFolderNode.build(entryNames).getStats(stats);
+		return stats;
+	}
+
+	private static Map<String, String> actualStats(List<String> entryNames) {
+		var trie = new PackageTrie();
+		for (var entryName : entryNames) {
+			trie.addClass(entryName);
+		}
+		var stats = new TreeMap<String, String>();
+		for (int node = PackageTrie.ROOT; node < trie.size(); node++) {
+			var previous = stats.put(trie.path(node, '/'), trie.depth(node) + " " + trie.deepClassCount(node));
+			assertNull(previous, "Duplicate node for folder " + trie.path(node, '/'));
+		}
+		return stats;
+	}
+
+	private static void assertSameStats(List<String> entryNames) {
+		assertEquals(expectedStats(entryNames), actualStats(entryNames));
+	}
+
+	@Test
+	void sameFolderStatsForEdgeCases() {
+		assertSameStats(List.of());
+		assertSameStats(List.of("Root.class"));
+		assertSameStats(List.of(
+				"Root.class",
+				"a/b/C.class",
+				"a/b/D.class",
+				"a/c/E.class",// same folder length as previous folder, but different folder
+				"a/b/F.class",// back to a folder that already exists
+				"a/bc/G.class",// sibling with previous folder as prefix
+				"a/H.class",
+				"x/y/z/w/v/I.class"));
+		assertSameStats(List.of(
+				"META-INF/versions/9/a/b/C.class",
+				"META-INF/versions/C.class",
+				"META-INF/versionsX/a/C.class",
+				"META-INF/a/C.class",
+				"a/b/C.class",
+				"META-INF/versions/11/a/b/D.class",
+				"a/b/D.class"));
+		assertSameStats(List.of(
+				"a//b/C.class",
+				"/a/b/D.class",
+				"a/b//E.class",
+				"a/b/F.class"));
+	}
+
+	@Test
+	void sameFolderStatsForGeneratedJar() {
+		var entryNames = new ArrayList<String>();
+		for (int i = 0; i < 30; i++) {
+			for (int j = 0; j < 20; j++) {
+				for (int k = 0; k < 5; k++) {
+					entryNames.add("com/example/module" + i + "/sub" + j + "/Class" + k + ".class");
+				}
+			}
+		}
+		assertSameStats(entryNames);
+		// classes of the same folder not stored next to each other
+		Collections.shuffle(entryNames, new Random(42));
+		assertSameStats(entryNames);
+	}
+
+	@Test
+	void sameFolderStatsForClasspathJars() {
+		var jars = 0;
+		for (var classpathEntry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			if (!classpathEntry.endsWith(".jar")) {
+				continue;
+			}
+			var entryNames = new ArrayList<String>();
+			try (var zip = new ZipFile(classpathEntry)) {
+				for (var entry : Collections.list(zip.entries())) {
+					if (entry.getName().endsWith(".class")) {
+						entryNames.add(entry.getName());
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			assertEquals(expectedStats(entryNames), actualStats(entryNames), classpathEntry);
+			jars++;
+		}
+		assertTrue(jars > 0, "No jars found on classpath");
+	}
+}